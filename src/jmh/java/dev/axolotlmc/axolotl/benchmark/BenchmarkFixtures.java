@@ -0,0 +1,163 @@
+package dev.axolotlmc.axolotl.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.Glyph;
+import dev.axolotlmc.axolotl.api.config.AxolotlConfig;
+import dev.axolotlmc.axolotl.delivery.PackDelivery;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import org.apache.commons.io.FileUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
+
+/**
+ * Generates synthetic mod folders and glyphs for the benchmarks. Everything is seeded, so every run measures the same input.
+ *
+ * @author Kenox
+ */
+public class BenchmarkFixtures {
+
+    public static final int SHIFT_BITS = 8;
+    private static boolean bootstrapped;
+
+    /**
+     * Registries are filled by the game bootstrap, which has to run before items can be resolved.
+     */
+    public static synchronized void bootstrapMinecraft() {
+        if (bootstrapped)
+            return;
+
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        bootstrapped = true;
+    }
+
+    /**
+     * @return a mod folder with {@code textures} item textures, {@code glyphs} glyphs and {@code items} custom items
+     */
+    public static File createModFolder(final int textures, final int glyphs, final int items) throws IOException {
+        final File modFolder = Files.createTempDirectory("axolotl-benchmark").toFile();
+        final File packDirectory = new File(modFolder, "pack");
+        final Random random = new Random(42);
+
+        FileUtils.writeStringToFile(new File(modFolder, "config.json"), """
+                {
+                  "bucket": {"upload": false, "bucket_api_url": "http://localhost/%s", "bucket_api_key": ""},
+                  "resource_pack": {"pack_compression": 6, "deterministic_pack": true}
+                }
+                """, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(packDirectory, "pack.mcmeta"),
+                "{\"pack\": {\"pack_format\": 9, \"description\": \"Benchmark\"}}", StandardCharsets.UTF_8);
+
+        for (int i = 0; i < textures; i++) {
+            writeTexture(new File(packDirectory, "textures/item/benchmark_" + i + ".png"), 16, random);
+        }
+
+        final JsonArray glyphArray = new JsonArray();
+
+        for (final Glyph glyph : createGlyphs(glyphs)) {
+            writeTexture(new File(packDirectory, "textures/font/" + glyph.getName() + ".png"), 8, random);
+
+            final JsonObject glyphObject = new JsonObject();
+            glyphObject.addProperty("name", glyph.getName());
+            glyphObject.addProperty("texture", glyph.getTexture());
+            glyphObject.addProperty("ascent", glyph.getAscent());
+            glyphObject.addProperty("height", glyph.getHeight());
+            glyphArray.add(glyphObject);
+        }
+
+        FileUtils.writeStringToFile(new File(modFolder, "glyphs/benchmark.json"), glyphArray.toString(), StandardCharsets.UTF_8);
+
+        final JsonArray itemArray = new JsonArray();
+
+        for (int i = 0; i < items; i++) {
+            final JsonObject itemObject = new JsonObject();
+            itemObject.addProperty("name", "benchmark_item_" + i);
+            itemObject.addProperty("display_name", "Benchmark Item " + i);
+            // Spread over a few base items, like a real pack
+            itemObject.addProperty("item", i % 3 == 0 ? "paper" : i % 3 == 1 ? "minecraft:stick" : "diamond_sword");
+            itemObject.addProperty("generate_model", true);
+            itemObject.addProperty("model", "item/benchmark_item_" + i);
+            itemObject.addProperty("custom_model_data", i + 1);
+            itemObject.addProperty("parent_model", "item/generated");
+
+            final JsonArray textureArray = new JsonArray();
+            textureArray.add("item/benchmark_" + (textures == 0 ? 0 : i % textures));
+            itemObject.add("textures", textureArray);
+            itemArray.add(itemObject);
+        }
+
+        FileUtils.writeStringToFile(new File(modFolder, "items/benchmark.json"), itemArray.toString(), StandardCharsets.UTF_8);
+        return modFolder;
+    }
+
+    /**
+     * @return a mod that uses the given folder and its config, without running the mod initializer
+     */
+    public static AxolotlMod createMod(final File modFolder) throws IOException {
+        final AxolotlMod mod = new AxolotlMod();
+        final File configFile = new File(modFolder, "config.json");
+
+        try {
+            setField(mod, "modFolder", modFolder);
+            setField(mod, "configFile", configFile);
+            setField(mod, "config", GSON.fromJson(FileUtils.readFileToString(configFile, StandardCharsets.UTF_8), AxolotlConfig.class));
+            // Builds refresh the join snapshot of the delivery, which stays unregistered here
+            setField(mod, "packDelivery", new PackDelivery(mod));
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to set up benchmark mod", e);
+        }
+
+        return mod;
+    }
+
+    /**
+     * @return {@code count} glyphs plus the shift glyphs for widths up to {@code 2^SHIFT_BITS - 1}
+     */
+    public static List<Glyph> createGlyphs(final int count) {
+        final List<Glyph> glyphs = new ArrayList<>();
+
+        for (int bit = 0; bit < SHIFT_BITS; bit++) {
+            glyphs.add(new Glyph("shift_" + (1 << bit), "minecraft:font/shift_" + (1 << bit) + ".png", 0, 8));
+            glyphs.add(new Glyph("right_shift_" + (1 << bit), "minecraft:font/right_shift_" + (1 << bit) + ".png", 0, 8));
+        }
+
+        for (int i = 0; i < count; i++) {
+            glyphs.add(new Glyph("benchmark_glyph_" + i, "minecraft:font/benchmark_glyph_" + i + ".png", 8, 8));
+        }
+
+        return glyphs;
+    }
+
+    private static void writeTexture(final File file, final int size, final Random random) throws IOException {
+        final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+            }
+        }
+
+        file.getParentFile().mkdirs();
+        ImageIO.write(image, "png", file);
+    }
+
+    private static void setField(final Object object, final String name, final Object value) throws ReflectiveOperationException {
+        final Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(object, value);
+    }
+}
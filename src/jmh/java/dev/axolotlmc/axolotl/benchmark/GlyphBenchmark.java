@@ -0,0 +1,87 @@
+package dev.axolotlmc.axolotl.benchmark;
+
+import dev.axolotlmc.axolotl.api.Glyph;
+import dev.axolotlmc.axolotl.pack.GlyphLayout;
+import dev.axolotlmc.axolotl.pack.PackRegistry;
+import net.minecraft.text.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and, with the gc profiler, allocation rate of the glyph APIs used while the server is running.
+ * They go through the same registry {@code ResourcePack} delegates to.
+ *
+ * @author Kenox
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GlyphBenchmark {
+
+    @Param({"100", "10000"})
+    public int glyphs;
+
+    private PackRegistry registry;
+    private String[] names;
+    private int nameIndex;
+    private int width;
+
+    @Setup(Level.Trial)
+    public void createRegistry() {
+        final List<Glyph> glyphList = BenchmarkFixtures.createGlyphs(this.glyphs);
+
+        // Codes are normally assigned by the pack build
+        for (int i = 0; i < glyphList.size(); i++) {
+            glyphList.get(i).setCodePoint(42000 + i);
+        }
+
+        this.registry = new PackRegistry(glyphList, List.of(), List.of(), (1 << BenchmarkFixtures.SHIFT_BITS) - 1);
+        this.names = glyphList.stream().map(Glyph::getName).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public Optional<Glyph> getGlyph() {
+        return Optional.ofNullable(this.registry.getGlyphsByName().get(this.nextName()));
+    }
+
+    @Benchmark
+    public String shift() {
+        return this.registry.getShiftTable().get(this.nextWidth(), false);
+    }
+
+    @Benchmark
+    public Text shiftText() {
+        return this.registry.getShiftTable().getText(this.nextWidth(), true);
+    }
+
+    @Benchmark
+    public String layout() {
+        return new GlyphLayout(this.registry.getShiftTable(), this.registry.getGlyphsByName())
+                .offset(-this.nextWidth())
+                .glyph(this.nextName())
+                .offset(this.nextWidth())
+                .text("Hey!")
+                .build();
+    }
+
+    private String nextName() {
+        this.nameIndex = this.nameIndex + 1 == this.names.length ? 0 : this.nameIndex + 1;
+        return this.names[this.nameIndex];
+    }
+
+    private int nextWidth() {
+        this.width = (this.width + 1) & ((1 << BenchmarkFixtures.SHIFT_BITS) - 1);
+        return this.width;
+    }
+}
@@ -0,0 +1,66 @@
+package dev.axolotlmc.axolotl.benchmark;
+
+import dev.axolotlmc.axolotl.api.CustomItem;
+import dev.axolotlmc.axolotl.pack.ItemModelGenerator;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
+
+/**
+ * Item model generation and item id resolution through the {@code ItemSerializer}.
+ *
+ * @author Kenox
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ItemBenchmark {
+
+    @Param({"100", "1000"})
+    public int items;
+
+    private final List<CustomItem> customItems = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void createItems() {
+        BenchmarkFixtures.bootstrapMinecraft();
+        final Item[] baseItems = {Items.PAPER, Items.STICK, Items.DIAMOND_SWORD};
+
+        for (int i = 0; i < this.items; i++) {
+            this.customItems.add(new CustomItem("benchmark_item_" + i, "Benchmark Item " + i, baseItems[i % baseItems.length], true,
+                    "item/benchmark_item_" + i, i + 1, "item/generated", List.of("item/benchmark_" + i)));
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> generateModels() {
+        return ItemModelGenerator.generate(this.customItems);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Item deserializeNamespacedId() {
+        return GSON.fromJson("\"minecraft:diamond_sword\"", Item.class);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Item deserializeBareId() {
+        return GSON.fromJson("\"diamond_sword\"", Item.class);
+    }
+}
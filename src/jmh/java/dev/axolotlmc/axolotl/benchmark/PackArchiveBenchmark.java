@@ -0,0 +1,133 @@
+package dev.axolotlmc.axolotl.benchmark;
+
+import dev.axolotlmc.axolotl.pack.BuildManifest;
+import dev.axolotlmc.axolotl.pack.PackArchiveWriter;
+import dev.axolotlmc.axolotl.pack.PackEntry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zip throughput of {@link PackArchiveWriter}, compressing every entry and copying unchanged entries from a previous archive.
+ * The {@code bytes} counter in the results is the uncompressed size written per second.
+ *
+ * @author Kenox
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PackArchiveBenchmark {
+
+    @Param({"1000", "10000"})
+    public int entries;
+
+    @Param({"4096"})
+    public int entrySize;
+
+    private final List<PackEntry> packEntries = new ArrayList<>();
+    private File archive;
+    private File previousArchive;
+    private BuildManifest previousManifest;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void createEntries() throws IOException {
+        final Random random = new Random(42);
+
+        for (int i = 0; i < this.entries; i++) {
+            // Half random, half repeated, roughly as compressible as textures and json
+            final byte[] data = new byte[this.entrySize];
+            random.nextBytes(data);
+            for (int j = this.entrySize / 2; j < this.entrySize; j++) {
+                data[j] = (byte) (j % 16);
+            }
+
+            this.packEntries.add(PackEntry.generated("assets/benchmark/textures/entry_" + i + ".png", data, 0));
+        }
+
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.archive = File.createTempFile("axolotl-benchmark", ".zip");
+        this.previousArchive = File.createTempFile("axolotl-benchmark-previous", ".zip");
+
+        final PackArchiveWriter writer = new PackArchiveWriter(this.previousArchive, 6, true, null, null);
+        try (writer) {
+            writer.addAll(this.packEntries, this.pool, this.pool.getParallelism());
+        }
+
+        this.previousManifest = new BuildManifest();
+        this.previousManifest.setOutputs(writer.getOutputs());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchives() {
+        this.pool.shutdown();
+        this.archive.delete();
+        this.previousArchive.delete();
+    }
+
+    @Benchmark
+    public String compressSequential(final Bytes bytes) throws IOException {
+        final PackArchiveWriter writer = new PackArchiveWriter(this.archive, 6, true, null, null);
+
+        try (writer) {
+            for (final PackEntry entry : this.packEntries) {
+                writer.addFile(entry.getName(), entry.read(), entry.getLastModified());
+            }
+        }
+
+        bytes.bytes += (long) this.entries * this.entrySize;
+        return writer.getHash();
+    }
+
+    @Benchmark
+    public String compressParallel(final Bytes bytes) throws IOException {
+        final PackArchiveWriter writer = new PackArchiveWriter(this.archive, 6, true, null, null);
+
+        try (writer) {
+            writer.addAll(this.packEntries, this.pool, this.pool.getParallelism());
+        }
+
+        bytes.bytes += (long) this.entries * this.entrySize;
+        return writer.getHash();
+    }
+
+    @Benchmark
+    public String copyUnchanged(final Bytes bytes) throws IOException {
+        final PackArchiveWriter writer = new PackArchiveWriter(this.archive, 6, true, this.previousManifest, this.previousArchive);
+
+        try (writer) {
+            writer.addAll(this.packEntries, this.pool, this.pool.getParallelism());
+        }
+
+        bytes.bytes += (long) this.entries * this.entrySize;
+        return writer.getHash();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package dev.axolotlmc.axolotl.benchmark;
+
+import dev.axolotlmc.axolotl.pack.ResourcePack;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link ResourcePack#generate()} on a synthetic pack, once from scratch and once with nothing changed.
+ *
+ * @author Kenox
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PackBuildBenchmark {
+
+    @Benchmark
+    public ResourcePack fullBuild(final FullBuildState state) throws IOException {
+        state.resourcePack.generate();
+        return state.resourcePack;
+    }
+
+    @Benchmark
+    public ResourcePack unchangedBuild(final UnchangedBuildState state) throws IOException {
+        state.resourcePack.generate();
+        return state.resourcePack;
+    }
+
+    @State(Scope.Benchmark)
+    public static class PackState {
+
+        @Param({"100", "1000"})
+        public int size;
+
+        File modFolder;
+        ResourcePack resourcePack;
+
+        @Setup(Level.Trial)
+        public void createPack() throws IOException {
+            BenchmarkFixtures.bootstrapMinecraft();
+            this.modFolder = BenchmarkFixtures.createModFolder(this.size, this.size, this.size);
+            this.resourcePack = new ResourcePack(BenchmarkFixtures.createMod(this.modFolder), new File(this.modFolder, "pack"));
+        }
+
+        @TearDown(Level.Trial)
+        public void deletePack() throws IOException {
+            FileUtils.deleteDirectory(this.modFolder);
+        }
+    }
+
+    public static class FullBuildState extends PackState {
+
+        // Without the previous pack and manifest nothing can be reused
+        @Setup(Level.Invocation)
+        public void deleteOutputs() {
+            new File(this.modFolder, "pack.zip").delete();
+            new File(this.modFolder, "pack-manifest.json").delete();
+        }
+    }
+
+    public static class UnchangedBuildState extends PackState {
+
+        @Setup(Level.Trial)
+        public void buildOnce() throws IOException {
+            this.resourcePack.generate();
+        }
+    }
+}
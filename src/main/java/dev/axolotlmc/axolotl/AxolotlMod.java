@@ -3,24 +3,26 @@ package dev.axolotlmc.axolotl;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dev.axolotlmc.axolotl.api.config.AxolotlConfig;
-import dev.axolotlmc.axolotl.api.config.bucket.ResourcePackConfig;
+import dev.axolotlmc.axolotl.api.config.bucket.PackServerConfig;
+import dev.axolotlmc.axolotl.api.metrics.PackMetrics;
 import dev.axolotlmc.axolotl.api.serializer.ItemSerializer;
+import dev.axolotlmc.axolotl.bootstrap.ModFolderBootstrap;
+import dev.axolotlmc.axolotl.bootstrap.ModFolderSync;
+import dev.axolotlmc.axolotl.delivery.PackDelivery;
+import dev.axolotlmc.axolotl.delivery.PackHttpServer;
+import dev.axolotlmc.axolotl.pack.PackWatcher;
 import dev.axolotlmc.axolotl.pack.ResourcePack;
-import dev.axolotlmc.axolotl.util.ZipUtil;
 import lombok.Getter;
 import net.fabricmc.api.ModInitializer;
-import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.item.Item;
-import net.minecraft.network.packet.s2c.play.ResourcePackSendS2CPacket;
-import net.minecraft.text.Text;
 import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -33,12 +35,16 @@ public class AxolotlMod implements ModInitializer {
             .registerTypeAdapter(Item.class, new ItemSerializer())
             .setPrettyPrinting()
             .create();
+    public static final PackMetrics METRICS = new PackMetrics();
 
     @Getter private File modFolder;
     @Getter private File configFile;
 
     @Getter private AxolotlConfig config;
     @Getter private ResourcePack resourcePack;
+    @Getter private PackDelivery packDelivery;
+    @Getter @Nullable private PackHttpServer packServer;
+    @Nullable private PackWatcher packWatcher;
 
     @Getter private String modFolderApiUrl;
     @Getter public String packApiUrl;
@@ -75,51 +81,83 @@ public class AxolotlMod implements ModInitializer {
             LOGGER.info("Mod directory does not exist. Starting download..");
 
             try {
-                final File outputFile = new File("mods/Axolotl.zip");
-                this.downloadFile(new URL(this.modFolderApiUrl), outputFile, this.config.getBucketConfig().getBucketApiKey());
-                ZipUtil.unZip(outputFile, new File("mods/"));
-                outputFile.delete();
+                new ModFolderBootstrap(this).run(new File("mods/"));
                 LOGGER.info("Mod directory download finished");
             } catch (final IOException e) {
-                e.printStackTrace();
+                LOGGER.error("Unable to download mod directory", e);
+            }
+        } else if (this.config.getBucketConfig().isSyncModFolder()) {
+            try {
+                new ModFolderSync(this).run();
+            } catch (final IOException e) {
+                LOGGER.error("Unable to sync mod directory, keeping the current files", e);
             }
         } else {
             LOGGER.info("Mod directory already exists");
         }
 
-        // Initialize resource pack
-        final File packDirectory = new File(this.modFolder, "pack");
-        this.resourcePack = new ResourcePack(this, packDirectory);
-        try {
-            this.resourcePack.generate();
-        } catch (final IOException e) {
-            LOGGER.error("Fatal error while generating resourcepack", e);
+        // Initialize built-in pack server
+        final PackServerConfig packServerConfig = this.config.getPackServerConfig();
+
+        if (packServerConfig != null && packServerConfig.isEnabled()) {
+            this.packServer = new PackHttpServer(packServerConfig);
+
+            try {
+                this.packServer.start();
+            } catch (final IOException e) {
+                LOGGER.error("Unable to start pack server", e);
+                this.packServer = null;
+            }
         }
 
-        // Send pack to player
-        final ResourcePackConfig resourcePackConfig = this.config.getResourcePackConfig();
-        ServerPlayConnectionEvents.JOIN.register((handler, packetSender, server) -> {
-            if (!this.config.getResourcePackConfig().isSendPackOnJoin()) {
-                LOGGER.warn("Cancelling pack send to player due to configuration..");
-                return;
+        // Initialize pack delivery, players get the last known pack until a new one is ready
+        this.packDelivery = new PackDelivery(this);
+        this.packDelivery.register();
+
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            try {
+                if (this.packWatcher != null)
+                    this.packWatcher.close();
+            } catch (final IOException e) {
+                LOGGER.warn("Unable to stop pack watcher", e);
             }
 
-            if (this.config.getHash() == null || this.config.getHash().isEmpty()) {
-                LOGGER.warn("Unable to send resource pack to player as hash is null or empty");
+            if (this.packServer == null)
                 return;
+
+            try {
+                this.packServer.close();
+            } catch (final IOException e) {
+                LOGGER.warn("Unable to stop pack server", e);
             }
+        });
+
+        // Initialize resource pack
+        final File packDirectory = new File(this.modFolder, "pack");
+        this.resourcePack = new ResourcePack(this, packDirectory);
 
-            final ResourcePackSendS2CPacket resourcePackSendS2CPacket = new ResourcePackSendS2CPacket(
-                    this.config.getPackUrl(),
-                    this.config.getHash(),
-                    resourcePackConfig.isForcePack(),
-                    resourcePackConfig.getPromptMessage() == null ? null : Text.literal(resourcePackConfig.getPromptMessage())
-            );
+        if (this.config.getResourcePackConfig().isAsyncBuild()) {
+            LOGGER.info("Generating resourcepack in the background..");
 
-            packetSender.sendPacket(resourcePackSendS2CPacket);
+            final Thread buildThread = new Thread(this::generateResourcePack, "Axolotl Pack Builder");
+            buildThread.setDaemon(true);
+            buildThread.start();
+        } else {
+            this.generateResourcePack();
+        }
 
-            handler.player.sendMessage(Text.literal(this.resourcePack.shift(67, true)).append(Text.literal("Hey!")));
-        });
+        // Rebuild the pack whenever its sources change, builds wait for each other
+        if (this.config.getResourcePackConfig().isHotReload()) {
+            final int debounceMillis = this.config.getResourcePackConfig().getHotReloadDebounceMillis();
+            this.packWatcher = new PackWatcher(this.resourcePack, debounceMillis > 0 ? debounceMillis : 500);
+
+            try {
+                this.packWatcher.start();
+            } catch (final IOException e) {
+                LOGGER.error("Unable to watch pack sources, hot reload is disabled", e);
+                this.packWatcher = null;
+            }
+        }
 
         // DEBUG
         /*ServerTickEvents.END_WORLD_TICK.register(new ServerTickEvents.EndWorldTick() {
@@ -153,15 +191,27 @@ public class AxolotlMod implements ModInitializer {
         });*/
     }
 
-    private void downloadFile(final URL url, final File output, final String apiKey) throws IOException {
-        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestProperty("X-API-Key", apiKey);
-        FileUtils.copyInputStreamToFile(connection.getInputStream(), output);
+    private void generateResourcePack() {
+        try {
+            this.resourcePack.generate();
+        } catch (final IOException | RuntimeException e) {
+            // Also runs on the builder thread, which would otherwise die without a word in the mod log
+            LOGGER.error("Fatal error while generating resourcepack", e);
+        }
     }
 
-    public void updatePackUrlAndHash(final String url, final String hash) throws IOException {
+    /**
+     * Called by builds and by finished uploads, possibly at the same time.
+     */
+    public synchronized void updatePackUrlAndHash(final String url, final String hash) throws IOException {
+        final boolean changed = !hash.equals(this.config.getHash());
+
         this.config.setPackUrl(url);
         this.config.setHash(hash);
         FileUtils.writeStringToFile(this.configFile, GSON.toJson(this.config), StandardCharsets.UTF_8);
+        this.packDelivery.refreshSnapshot();
+
+        if (changed)
+            this.packDelivery.onPackUpdated();
     }
 }
\ No newline at end of file
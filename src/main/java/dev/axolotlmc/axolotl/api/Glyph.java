@@ -1,15 +1,18 @@
 package dev.axolotlmc.axolotl.api;
 
 import com.google.gson.annotations.SerializedName;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Kenox
  */
 @Data
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class Glyph {
 
     @SerializedName("name")
@@ -24,6 +27,43 @@ public class Glyph {
     @SerializedName("height")
     private final int height;
 
+    // Characters are assigned by the pack build now, this is only read to warn about definitions that still set one
     @SerializedName("char")
-    @Setter private Character character;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    @Nullable private Character configuredCharacter;
+
+    // Assigned by the pack build and remembered in glyph-codes.json
+    @Setter private transient int codePoint;
+
+    /**
+     * @deprecated the character is assigned by the pack build, a configured one is ignored
+     */
+    @Deprecated
+    public Glyph(final String name, final String texture, final int ascent, final int height, @Nullable final Character character) {
+        this(name, texture, ascent, height);
+        this.configuredCharacter = character;
+    }
+
+    /**
+     * @return the text of this glyph, two chars long for code points outside the basic multilingual plane
+     */
+    public String getText() {
+        return Character.toString(this.codePoint);
+    }
+
+    /**
+     * @throws IllegalStateException if the code point is outside the basic multilingual plane and does not fit in one char
+     * @deprecated use {@link #getText()}, which works for every code point
+     */
+    @Deprecated
+    public Character getCharacter() {
+        if (!Character.isBmpCodePoint(this.codePoint))
+            throw new IllegalStateException("Glyph " + this.name + " has the supplementary code point " + this.codePoint + ", use getText()");
+
+        return (char) this.codePoint;
+    }
+
+    public boolean hasConfiguredCharacter() {
+        return this.configuredCharacter != null;
+    }
 }
@@ -2,9 +2,12 @@ package dev.axolotlmc.axolotl.api.config;
 
 import com.google.gson.annotations.SerializedName;
 import dev.axolotlmc.axolotl.api.config.bucket.BucketConfig;
+import dev.axolotlmc.axolotl.api.config.bucket.DeliveryConfig;
+import dev.axolotlmc.axolotl.api.config.bucket.PackServerConfig;
 import dev.axolotlmc.axolotl.api.config.bucket.ResourcePackConfig;
 import lombok.Data;
 import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Kenox
@@ -13,14 +16,20 @@ import lombok.Setter;
 public class AxolotlConfig {
 
     @SerializedName("url")
-    @Setter private String packUrl;
+    @Setter private volatile String packUrl;
 
     @SerializedName("hash")
-    @Setter private String hash;
+    @Setter private volatile String hash;
 
     @SerializedName("bucket")
     private final BucketConfig bucketConfig;
 
     @SerializedName("resource_pack")
     private final ResourcePackConfig resourcePackConfig;
+
+    @SerializedName("pack_server")
+    @Nullable private PackServerConfig packServerConfig;
+
+    @SerializedName("delivery")
+    @Nullable private DeliveryConfig deliveryConfig;
 }
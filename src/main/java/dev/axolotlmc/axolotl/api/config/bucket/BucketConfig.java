@@ -17,4 +17,19 @@ public class BucketConfig {
 
     @SerializedName("bucket_api_key")
     private final String bucketApiKey;
+
+    @SerializedName("chunked_upload")
+    private final boolean chunkedUpload;
+
+    @SerializedName("chunk_size_kib")
+    private final int chunkSizeKib;
+
+    @SerializedName("upload_retries")
+    private final int uploadRetries;
+
+    @SerializedName("sync_mod_folder")
+    private final boolean syncModFolder;
+
+    @SerializedName("sync_threads")
+    private final int syncThreads;
 }
@@ -0,0 +1,35 @@
+package dev.axolotlmc.axolotl.api.config.bucket;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Limits how fast packs are sent to joining players, limits of 0 are not applied.
+ *
+ * @author Kenox
+ */
+@Data
+public class DeliveryConfig {
+
+    @SerializedName("enabled")
+    private final boolean enabled;
+
+    @SerializedName("sends_per_second")
+    private final int sendsPerSecond;
+
+    @SerializedName("send_burst")
+    private final int sendBurst;
+
+    @SerializedName("max_concurrent_downloads")
+    private final int maxConcurrentDownloads;
+
+    @SerializedName("bandwidth_mib_per_second")
+    private final int bandwidthMibPerSecond;
+
+    @SerializedName("download_timeout_seconds")
+    private final int downloadTimeoutSeconds;
+
+    @SerializedName("queue_message")
+    @Nullable private String queueMessage;
+}
@@ -0,0 +1,29 @@
+package dev.axolotlmc.axolotl.api.config.bucket;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Decides what happens to online players once a new pack is ready.
+ *
+ * @author Kenox
+ */
+public enum PackResendPolicy {
+
+    /**
+     * Only players joining afterwards receive the new pack.
+     */
+    @SerializedName("never")
+    NEVER,
+
+    /**
+     * All online players receive the new pack right away.
+     */
+    @SerializedName("immediately")
+    IMMEDIATELY,
+
+    /**
+     * All online players receive the new pack after {@code resend_delay_seconds}.
+     */
+    @SerializedName("delayed")
+    DELAYED
+}
@@ -0,0 +1,30 @@
+package dev.axolotlmc.axolotl.api.config.bucket;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * @author Kenox
+ */
+@Data
+public class PackServerConfig {
+
+    @SerializedName("enabled")
+    private final boolean enabled;
+
+    @SerializedName("bind_address")
+    @Nullable private String bindAddress;
+
+    @SerializedName("port")
+    private final int port;
+
+    @SerializedName("public_url")
+    @Nullable private String publicUrl;
+
+    @SerializedName("max_connections")
+    private final int maxConnections;
+
+    @SerializedName("idle_timeout_seconds")
+    private final int idleTimeoutSeconds;
+}
@@ -4,6 +4,8 @@ import com.google.gson.annotations.SerializedName;
 import lombok.Data;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 /**
  * @author Kenox
  */
@@ -21,4 +23,58 @@ public class ResourcePackConfig {
 
     @SerializedName("pack_compression")
     private final int packCompression;
+
+    @SerializedName("deterministic_pack")
+    private final boolean deterministicPack;
+
+    @SerializedName("optimize_assets")
+    private final boolean optimizeAssets;
+
+    @SerializedName("asset_report")
+    private final boolean assetReport;
+
+    @SerializedName("prune_assets")
+    private final boolean pruneAssets;
+
+    @SerializedName("prune_keep_prefixes")
+    @Nullable private List<String> pruneKeepPrefixes;
+
+    @SerializedName("glyph_atlas")
+    private final boolean glyphAtlas;
+
+    @SerializedName("record_change_history")
+    private final boolean recordChangeHistory;
+
+    @SerializedName("max_shift_width")
+    private final int maxShiftWidth;
+
+    @SerializedName("build_threads")
+    private final int buildThreads;
+
+    @SerializedName("async_build")
+    private final boolean asyncBuild;
+
+    @SerializedName("hot_reload")
+    private final boolean hotReload;
+
+    @SerializedName("hot_reload_debounce_millis")
+    private final int hotReloadDebounceMillis;
+
+    @SerializedName("export_metrics")
+    private final boolean exportMetrics;
+
+    @SerializedName("resend_policy")
+    @Nullable private PackResendPolicy resendPolicy;
+
+    @SerializedName("resend_delay_seconds")
+    private final int resendDelaySeconds;
+
+    @SerializedName("download_retries")
+    private final int downloadRetries;
+
+    @SerializedName("download_retry_delay_seconds")
+    private final int downloadRetryDelaySeconds;
+
+    @SerializedName("gate_until_loaded")
+    private final boolean gateUntilLoaded;
 }
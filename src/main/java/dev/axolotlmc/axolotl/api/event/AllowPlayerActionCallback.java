@@ -0,0 +1,27 @@
+package dev.axolotlmc.axolotl.api.event;
+
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.EventFactory;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Called on the server thread before a player moves, uses or attacks something or breaks a block.
+ * The action is cancelled as soon as one listener returns {@code false}. A cancelled move is only dropped,
+ * listeners that deny moves are responsible for putting the client back, for example with {@code requestTeleport}.
+ *
+ * @author Kenox
+ */
+@FunctionalInterface
+public interface AllowPlayerActionCallback {
+
+    Event<AllowPlayerActionCallback> EVENT = EventFactory.createArrayBacked(AllowPlayerActionCallback.class, listeners -> player -> {
+        for (final AllowPlayerActionCallback listener : listeners) {
+            if (!listener.allowAction(player))
+                return false;
+        }
+
+        return true;
+    });
+
+    boolean allowAction(ServerPlayerEntity player);
+}
@@ -0,0 +1,23 @@
+package dev.axolotlmc.axolotl.api.event;
+
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.EventFactory;
+import net.minecraft.network.packet.c2s.play.ResourcePackStatusC2SPacket;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * Called on the server thread whenever a player reports the status of the server resource pack.
+ *
+ * @author Kenox
+ */
+@FunctionalInterface
+public interface ResourcePackStatusCallback {
+
+    Event<ResourcePackStatusCallback> EVENT = EventFactory.createArrayBacked(ResourcePackStatusCallback.class, listeners -> (player, status) -> {
+        for (final ResourcePackStatusCallback listener : listeners) {
+            listener.onStatus(player, status);
+        }
+    });
+
+    void onStatus(ServerPlayerEntity player, ResourcePackStatusC2SPacket.Status status);
+}
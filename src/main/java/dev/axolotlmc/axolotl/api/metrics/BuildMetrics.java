@@ -0,0 +1,39 @@
+package dev.axolotlmc.axolotl.api.metrics;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Metrics of one {@code ResourcePack#generate()} run, phases are in the order they were first recorded.
+ *
+ * @author Kenox
+ */
+@Data
+public class BuildMetrics {
+
+    /**
+     * Counts up from 1 with every build since the server started.
+     */
+    @SerializedName("build")
+    private final int build;
+
+    @SerializedName("started_at")
+    private final long startedAt;
+
+    @SerializedName("total_millis")
+    private final double totalMillis;
+
+    @SerializedName("pack_hash")
+    @Nullable private final String packHash;
+
+    @SerializedName("phases")
+    private final List<PhaseMetrics> phases;
+
+    public Optional<PhaseMetrics> getPhase(final String name) {
+        return this.phases.stream().filter(phase -> phase.getName().equals(name)).findFirst();
+    }
+}
@@ -0,0 +1,52 @@
+package dev.axolotlmc.axolotl.api.metrics;
+
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the phases of one pack build.
+ *
+ * @author Kenox
+ */
+public class BuildRecorder {
+
+    public static final String GLYPH_LOAD = "glyph_load";
+    public static final String SOUND_LOAD = "sound_load";
+    public static final String ITEM_LOAD = "item_load";
+    public static final String HASHING = "hashing";
+    public static final String COPY = "copy";
+    public static final String FONT_GENERATION = "font_generation";
+    public static final String ITEM_GENERATION = "item_generation";
+    public static final String COMPRESSION = "compression";
+    public static final String UPLOAD = "upload";
+
+    @Getter private final int build;
+    private final long startedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, PhaseRecorder> phases = new LinkedHashMap<>();
+    private volatile double totalMillis;
+
+    BuildRecorder(final int build) {
+        this.build = build;
+    }
+
+    public synchronized PhaseRecorder phase(final String name) {
+        return this.phases.computeIfAbsent(name, PhaseRecorder::new);
+    }
+
+    /**
+     * Ends the build, phases recorded later, like the upload, are still included in later snapshots.
+     */
+    public void finish() {
+        this.totalMillis = (System.nanoTime() - this.startNanos) / 1e6;
+    }
+
+    public synchronized BuildMetrics toMetrics(@Nullable final String packHash) {
+        final List<PhaseMetrics> phases = this.phases.values().stream().map(PhaseRecorder::toMetrics).toList();
+        return new BuildMetrics(this.build, this.startedAt, this.totalMillis, packHash, phases);
+    }
+}
@@ -0,0 +1,40 @@
+package dev.axolotlmc.axolotl.api.metrics;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+import net.minecraft.network.packet.c2s.play.ResourcePackStatusC2SPacket;
+
+import java.util.UUID;
+
+/**
+ * One pack sent to a player, from the {@code ResourcePackSendS2CPacket} to the final status reported by the client.
+ *
+ * @author Kenox
+ */
+@Data
+public class DeliveryMetrics {
+
+    @SerializedName("player")
+    private final UUID player;
+
+    @SerializedName("pack_hash")
+    private final String packHash;
+
+    @SerializedName("sent_at")
+    private final long sentAt;
+
+    /**
+     * Time until the client accepted the prompt, -1 if it never did.
+     */
+    @SerializedName("accepted_millis")
+    private final long acceptedMillis;
+
+    /**
+     * Time until the client loaded, declined or failed to download the pack.
+     */
+    @SerializedName("completed_millis")
+    private final long completedMillis;
+
+    @SerializedName("status")
+    private final ResourcePackStatusC2SPacket.Status status;
+}
@@ -0,0 +1,160 @@
+package dev.axolotlmc.axolotl.api.metrics;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import net.minecraft.network.packet.c2s.play.ResourcePackStatusC2SPacket;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
+
+/**
+ * Metrics of the recent pack builds and deliveries, available to other mods through {@code AxolotlMod.METRICS}.
+ *
+ * @author Kenox
+ */
+public class PackMetrics {
+
+    private static final int MAX_BUILDS = 16;
+    private static final int MAX_DELIVERIES = 256;
+
+    private final AtomicInteger buildCounter = new AtomicInteger();
+    private final Deque<BuildMetrics> builds = new ArrayDeque<>();
+    private final Deque<DeliveryMetrics> deliveries = new ArrayDeque<>();
+    private final Map<UUID, PendingDelivery> pendingDeliveries = new ConcurrentHashMap<>();
+    private final Map<ResourcePackStatusC2SPacket.Status, Integer> statusCounts = new EnumMap<>(ResourcePackStatusC2SPacket.Status.class);
+    private long loadedMillis;
+
+    public BuildRecorder startBuild() {
+        return new BuildRecorder(this.buildCounter.incrementAndGet());
+    }
+
+    /**
+     * Adds the metrics of a build, replacing earlier metrics of the same build.
+     */
+    public synchronized void recordBuild(final BuildMetrics metrics) {
+        this.builds.removeIf(build -> build.getBuild() == metrics.getBuild());
+        this.builds.addLast(metrics);
+
+        if (this.builds.size() > MAX_BUILDS)
+            this.builds.removeFirst();
+    }
+
+    public void onPackSent(final UUID player, final String packHash) {
+        this.pendingDeliveries.put(player, new PendingDelivery(packHash, System.currentTimeMillis(), System.nanoTime()));
+    }
+
+    public void onPackStatus(final UUID player, final ResourcePackStatusC2SPacket.Status status) {
+        final PendingDelivery pendingDelivery = this.pendingDeliveries.get(player);
+
+        if (pendingDelivery == null)
+            return;
+
+        final long elapsedMillis = (System.nanoTime() - pendingDelivery.sentNanos) / 1_000_000;
+
+        if (status == ResourcePackStatusC2SPacket.Status.ACCEPTED) {
+            pendingDelivery.acceptedMillis = elapsedMillis;
+            return;
+        }
+
+        // Only remove the delivery this status belongs to, a newer pack may have been sent meanwhile
+        if (!this.pendingDeliveries.remove(player, pendingDelivery))
+            return;
+
+        this.recordDelivery(new DeliveryMetrics(player, pendingDelivery.packHash, pendingDelivery.sentAt, pendingDelivery.acceptedMillis,
+                elapsedMillis, status));
+    }
+
+    public void onDisconnect(final UUID player) {
+        this.pendingDeliveries.remove(player);
+    }
+
+    public synchronized Optional<BuildMetrics> getLastBuild() {
+        return Optional.ofNullable(this.builds.peekLast());
+    }
+
+    public synchronized List<BuildMetrics> getBuilds() {
+        return List.copyOf(this.builds);
+    }
+
+    public synchronized List<DeliveryMetrics> getDeliveries() {
+        return List.copyOf(this.deliveries);
+    }
+
+    /**
+     * @return number of completed deliveries by their final status, since the server started
+     */
+    public synchronized Map<ResourcePackStatusC2SPacket.Status, Integer> getStatusCounts() {
+        return Map.copyOf(this.statusCounts);
+    }
+
+    /**
+     * @return average time until a client loaded the pack, -1 if none did yet
+     */
+    public synchronized long getAverageLoadMillis() {
+        final int loaded = this.statusCounts.getOrDefault(ResourcePackStatusC2SPacket.Status.SUCCESSFULLY_LOADED, 0);
+        return loaded == 0 ? -1 : this.loadedMillis / loaded;
+    }
+
+    public void save(final File file) throws IOException {
+        final Snapshot snapshot;
+
+        synchronized (this) {
+            snapshot = new Snapshot(new ArrayList<>(this.builds), new ArrayList<>(this.deliveries), new EnumMap<>(this.statusCounts),
+                    this.getAverageLoadMillis());
+        }
+
+        FileUtils.writeStringToFile(file, GSON.toJson(snapshot), StandardCharsets.UTF_8);
+    }
+
+    private synchronized void recordDelivery(final DeliveryMetrics metrics) {
+        this.deliveries.addLast(metrics);
+
+        if (this.deliveries.size() > MAX_DELIVERIES)
+            this.deliveries.removeFirst();
+
+        this.statusCounts.merge(metrics.getStatus(), 1, Integer::sum);
+
+        if (metrics.getStatus() == ResourcePackStatusC2SPacket.Status.SUCCESSFULLY_LOADED)
+            this.loadedMillis += metrics.getCompletedMillis();
+    }
+
+    @RequiredArgsConstructor
+    private static class PendingDelivery {
+
+        private final String packHash;
+        private final long sentAt;
+        private final long sentNanos;
+        private volatile long acceptedMillis = -1;
+    }
+
+    @Data
+    private static class Snapshot {
+
+        @SerializedName("builds")
+        private final List<BuildMetrics> builds;
+
+        @SerializedName("deliveries")
+        private final List<DeliveryMetrics> deliveries;
+
+        @SerializedName("status_counts")
+        private final Map<ResourcePackStatusC2SPacket.Status, Integer> statusCounts;
+
+        @SerializedName("average_load_millis")
+        private final long averageLoadMillis;
+    }
+}
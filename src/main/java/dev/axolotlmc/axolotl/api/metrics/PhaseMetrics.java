@@ -0,0 +1,37 @@
+package dev.axolotlmc.axolotl.api.metrics;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Data;
+
+/**
+ * What one phase of a pack build did.
+ *
+ * @author Kenox
+ */
+@Data
+public class PhaseMetrics {
+
+    @SerializedName("name")
+    private final String name;
+
+    /**
+     * From the start of its first task to the end of its last one, tasks of a phase may run in parallel.
+     */
+    @SerializedName("wall_millis")
+    private final double wallMillis;
+
+    @SerializedName("bytes_read")
+    private final long bytesRead;
+
+    @SerializedName("bytes_written")
+    private final long bytesWritten;
+
+    @SerializedName("entries")
+    private final long entries;
+
+    /**
+     * Heap allocated by all tasks of the phase, -1 if the JVM can not measure it.
+     */
+    @SerializedName("allocated_bytes")
+    private final long allocatedBytes;
+}
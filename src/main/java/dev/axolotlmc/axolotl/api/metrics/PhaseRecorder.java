@@ -0,0 +1,121 @@
+package dev.axolotlmc.axolotl.api.metrics;
+
+import dev.axolotlmc.axolotl.util.AsyncUtil;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of one build phase. Safe to use from every thread the phase runs on.
+ *
+ * @author Kenox
+ */
+public class PhaseRecorder {
+
+    @Getter private final String name;
+    private final AtomicLong startNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong endNanos = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    PhaseRecorder(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Measures a part of the phase that runs on the current thread.
+     */
+    public <T> T measure(final AsyncUtil.IOSupplier<T> supplier) throws IOException {
+        final long start = System.nanoTime();
+        final long allocated = getAllocatedBytes();
+
+        try {
+            return supplier.get();
+        } finally {
+            this.record(start, allocated);
+        }
+    }
+
+    public void run(final AsyncUtil.IORunnable runnable) throws IOException {
+        this.measure(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return executor that measures every task it runs as a part of this phase
+     */
+    public Executor wrap(final Executor executor) {
+        return task -> executor.execute(() -> {
+            final long start = System.nanoTime();
+            final long allocated = getAllocatedBytes();
+
+            try {
+                task.run();
+            } finally {
+                this.record(start, allocated);
+            }
+        });
+    }
+
+    public void addBytesRead(final long bytes) {
+        this.bytesRead.add(bytes);
+    }
+
+    public void addBytesWritten(final long bytes) {
+        this.bytesWritten.add(bytes);
+    }
+
+    public void addEntries(final long entries) {
+        this.entries.add(entries);
+    }
+
+    public PhaseMetrics toMetrics() {
+        final long start = this.startNanos.get();
+        final long end = this.endNanos.get();
+
+        return new PhaseMetrics(this.name, end < start ? 0 : (end - start) / 1e6, this.bytesRead.sum(), this.bytesWritten.sum(),
+                this.entries.sum(), AllocationCounter.SUPPORTED ? this.allocatedBytes.sum() : -1);
+    }
+
+    private void record(final long start, final long allocated) {
+        this.startNanos.accumulateAndGet(start, Math::min);
+        this.endNanos.accumulateAndGet(System.nanoTime(), Math::max);
+
+        if (AllocationCounter.SUPPORTED)
+            this.allocatedBytes.add(getAllocatedBytes() - allocated);
+    }
+
+    private static long getAllocatedBytes() {
+        return AllocationCounter.SUPPORTED ? AllocationCounter.THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Allocations are counted per thread by HotSpot based JVMs, other JVMs leave them at -1.
+     */
+    private static class AllocationCounter {
+
+        private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN;
+        private static final boolean SUPPORTED;
+
+        static {
+            com.sun.management.ThreadMXBean threadMXBean = null;
+
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sunThreadMXBean
+                    && sunThreadMXBean.isThreadAllocatedMemorySupported()) {
+                sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+                threadMXBean = sunThreadMXBean;
+            }
+
+            THREAD_MX_BEAN = threadMXBean;
+            SUPPORTED = threadMXBean != null;
+        }
+    }
+}
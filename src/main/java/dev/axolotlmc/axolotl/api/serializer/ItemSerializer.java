@@ -4,23 +4,86 @@ import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
+import lombok.RequiredArgsConstructor;
 import net.minecraft.item.Item;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.registry.Registry;
 
 import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
+ * Resolves items by their id. Ids without a namespace are looked up in {@code minecraft} first
+ * and then in every other namespace.
+ *
  * @author Kenox
  */
 public class ItemSerializer implements JsonDeserializer<Item> {
 
+    private volatile PathIndex pathIndex;
+
     @Override
     public Item deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        Optional<Item> optionalItem = Registry.ITEM.stream()
-                .filter(item -> Registry.ITEM.getId(item).getPath().equals(json.getAsString()))
-                .findFirst();
+        final String value = json.getAsString();
+
+        if (value.indexOf(':') != -1) {
+            final Identifier identifier = Identifier.tryParse(value);
+
+            if (identifier == null)
+                throw new JsonParseException("Invalid item id " + value);
+
+            return Registry.ITEM.getOrEmpty(identifier).orElseThrow(() -> new JsonParseException("Unknown item " + value));
+        }
+
+        final Identifier identifier = Identifier.tryParse("minecraft:" + value);
+
+        if (identifier == null)
+            throw new JsonParseException("Invalid item id " + value);
+
+        final Optional<Item> optionalItem = Registry.ITEM.getOrEmpty(identifier);
+
+        if (optionalItem.isPresent())
+            return optionalItem.get();
+
+        final Item item = this.getPathIndex().items.get(value);
+
+        if (item == null)
+            throw new JsonParseException("Unknown item " + value);
+
+        return item;
+    }
+
+    private PathIndex getPathIndex() {
+        PathIndex pathIndex = this.pathIndex;
+
+        // Mods may still register items until the registry is frozen
+        if (pathIndex != null && pathIndex.registrySize == Registry.ITEM.size())
+            return pathIndex;
+
+        synchronized (this) {
+            pathIndex = this.pathIndex;
+
+            if (pathIndex != null && pathIndex.registrySize == Registry.ITEM.size())
+                return pathIndex;
+
+            final Map<String, Item> items = new HashMap<>();
+
+            for (final Item item : Registry.ITEM) {
+                items.putIfAbsent(Registry.ITEM.getId(item).getPath(), item);
+            }
+
+            pathIndex = new PathIndex(Registry.ITEM.size(), items);
+            this.pathIndex = pathIndex;
+            return pathIndex;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class PathIndex {
 
-        return optionalItem.orElse(null);
+        private final int registrySize;
+        private final Map<String, Item> items;
     }
 }
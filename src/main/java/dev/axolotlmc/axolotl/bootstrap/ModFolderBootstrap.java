@@ -0,0 +1,135 @@
+package dev.axolotlmc.axolotl.bootstrap;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.util.HashUtil;
+import dev.axolotlmc.axolotl.util.ZipUtil;
+import lombok.RequiredArgsConstructor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Provisions the mod folder of a fresh server from the bucket. The archive is extracted while it downloads, without a
+ * temporary file, into a staging directory that is only moved into place once the archive is complete and verified.
+ * <p>
+ * An {@code Axolotl.zip} placed next to the mod folder is extracted in parallel instead of downloading the archive.
+ *
+ * @author Kenox
+ */
+@RequiredArgsConstructor
+public class ModFolderBootstrap {
+
+    public static final String CHECKSUM_HEADER = "X-Checksum-SHA1";
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(120, TimeUnit.SECONDS)
+            .build();
+
+    private final AxolotlMod mod;
+
+    /**
+     * Extracts the mod folder archive into the given directory, the archive contains the mod folder itself.
+     */
+    public void run(final File destination) throws IOException {
+        final File localArchive = new File(destination, "Axolotl.zip");
+        final File staging = new File(destination, ".axolotl-bootstrap");
+        final long start = System.currentTimeMillis();
+
+        FileUtils.deleteDirectory(staging);
+
+        try {
+            if (localArchive.isFile()) {
+                AxolotlMod.LOGGER.info("Extracting " + localArchive.getPath() + "..");
+                final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+                try {
+                    ZipUtil.unZip(localArchive, staging, pool);
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                this.download(staging);
+            }
+
+            moveInto(staging.toPath(), destination.toPath());
+        } finally {
+            FileUtils.deleteDirectory(staging);
+        }
+
+        if (localArchive.isFile() && !localArchive.delete())
+            AxolotlMod.LOGGER.warn("Unable to delete " + localArchive.getPath());
+
+        AxolotlMod.LOGGER.info("Mod directory ready in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void download(final File staging) throws IOException {
+        final Request request = new Request.Builder()
+                .url(this.mod.getModFolderApiUrl())
+                .addHeader("X-API-Key", this.mod.getConfig().getBucketConfig().getBucketApiKey())
+                .get()
+                .build();
+
+        try (final Response response = HTTP_CLIENT.newCall(request).execute()) {
+            final ResponseBody body = response.body();
+
+            if (!response.isSuccessful() || body == null)
+                throw new IOException("Bucket responded with " + response.code() + " " + response.message());
+
+            final String expectedHash = response.header(CHECKSUM_HEADER);
+            final MessageDigest digest = HashUtil.sha1();
+
+            try (final InputStream inputStream = new DigestInputStream(new BufferedInputStream(body.byteStream(), BUFFER_SIZE), digest)) {
+                ZipUtil.unZip(inputStream, staging);
+            }
+
+            final String hash = HashUtil.toHex(digest.digest());
+
+            if (expectedHash == null) {
+                AxolotlMod.LOGGER.warn("Bucket sent no " + CHECKSUM_HEADER + " header, only the CRC-32 of each entry was verified");
+            } else if (!expectedHash.trim().equalsIgnoreCase(hash)) {
+                throw new IOException("Mod folder archive has hash " + hash + " but the bucket reported " + expectedHash);
+            }
+        }
+    }
+
+    /**
+     * Moves every file below source to the same place below target, replacing existing files.
+     */
+    private static void moveInto(final Path source, final Path target) throws IOException {
+        try (final Stream<Path> children = Files.list(source)) {
+            for (final Path child : (Iterable<Path>) children::iterator) {
+                final Path targetChild = target.resolve(child.getFileName().toString());
+
+                // Existing directories are merged, everything else is renamed as a whole
+                if (Files.isDirectory(child) && Files.isDirectory(targetChild)) {
+                    moveInto(child, targetChild);
+                    continue;
+                }
+
+                try {
+                    Files.move(child, targetChild, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(child, targetChild, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package dev.axolotlmc.axolotl.bootstrap;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.pack.BuildManifest;
+import dev.axolotlmc.axolotl.util.AsyncUtil;
+import dev.axolotlmc.axolotl.util.HashUtil;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
+
+/**
+ * Brings an existing mod folder up to date with the bucket by downloading only missing and changed files.
+ * <p>
+ * It uses these bucket endpoints:
+ * <ul>
+ *     <li>{@code GET modfolder/manifest} responds with a json object of every file path to its SHA-1</li>
+ *     <li>{@code GET modfolder/file?path=<path>} responds with the content of one file</li>
+ * </ul>
+ * Files are downloaded into a staging directory and verified first. Then a journal of the changes is written and applied,
+ * and a journal left behind by a crash is applied on the next start, so the folder is never used half-synced.
+ * Only files that came from the bucket are deleted when they disappear upstream, and config.json is never touched.
+ *
+ * @author Kenox
+ */
+@RequiredArgsConstructor
+public class ModFolderSync {
+
+    private static final int DEFAULT_THREADS = 8;
+    private static final String STATE_FILE = "mod-folder-sync.json";
+    private static final String JOURNAL_FILE = "mod-folder-sync-journal.json";
+    private static final String STAGING_DIRECTORY = ".sync-staging";
+    private static final Set<String> EXCLUDED_FILES = Set.of("config.json", STATE_FILE, JOURNAL_FILE);
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(120, TimeUnit.SECONDS)
+            .build();
+
+    private final AxolotlMod mod;
+
+    public void run() throws IOException {
+        final File modFolder = this.mod.getModFolder();
+        final File stateFile = new File(modFolder, STATE_FILE);
+        final File journalFile = new File(modFolder, JOURNAL_FILE);
+        final File staging = new File(modFolder, STAGING_DIRECTORY);
+
+        // A crash while applying the last sync leaves its journal behind
+        if (journalFile.exists()) {
+            AxolotlMod.LOGGER.warn("Finishing interrupted mod folder sync..");
+            this.apply(Journal.load(journalFile), stateFile, journalFile, staging);
+        }
+
+        FileUtils.deleteDirectory(staging);
+
+        final long start = System.currentTimeMillis();
+        final Map<String, String> remoteFiles = this.fetchManifest();
+        final SyncState previousState = SyncState.load(stateFile);
+        final int syncThreads = this.mod.getConfig().getBucketConfig().getSyncThreads();
+        final ForkJoinPool pool = new ForkJoinPool(syncThreads > 0 ? syncThreads : DEFAULT_THREADS);
+
+        try {
+            final Map<String, BuildManifest.InputRecord> localFiles = this.hashLocalFiles(remoteFiles.keySet(), previousState, pool);
+            final List<String> changedFiles = new ArrayList<>();
+            final List<String> deletedFiles = new ArrayList<>();
+
+            remoteFiles.forEach((path, hash) -> {
+                final BuildManifest.InputRecord record = localFiles.get(path);
+
+                if (record == null || !record.getHash().equalsIgnoreCase(hash))
+                    changedFiles.add(path);
+            });
+
+            for (final String path : previousState.getFiles().keySet()) {
+                if (!remoteFiles.containsKey(path) && new File(modFolder, path).exists())
+                    deletedFiles.add(path);
+            }
+
+            if (changedFiles.isEmpty() && deletedFiles.isEmpty()) {
+                AxolotlMod.LOGGER.info("Mod directory is up to date");
+                new SyncState(localFiles).save(stateFile);
+                return;
+            }
+
+            AxolotlMod.LOGGER.info("Syncing mod directory, " + changedFiles.size() + " changed and " + deletedFiles.size() + " deleted files..");
+
+            final Map<String, CompletableFuture<Long>> downloads = new TreeMap<>();
+            for (final String path : changedFiles) {
+                downloads.put(path, AsyncUtil.supplyAsync(() -> this.download(path, remoteFiles.get(path), new File(staging, path)), pool));
+            }
+
+            AsyncUtil.join(CompletableFuture.allOf(downloads.values().toArray(CompletableFuture[]::new)));
+
+            // Files are recorded as they will be once the journal is applied
+            final Map<String, BuildManifest.InputRecord> files = new TreeMap<>(localFiles);
+            long downloadedBytes = 0;
+
+            for (final Map.Entry<String, CompletableFuture<Long>> download : downloads.entrySet()) {
+                final File stagedFile = new File(staging, download.getKey());
+                files.put(download.getKey(), new BuildManifest.InputRecord(remoteFiles.get(download.getKey()), stagedFile.length(),
+                        stagedFile.lastModified()));
+                downloadedBytes += download.getValue().join();
+            }
+
+            final Journal journal = new Journal(changedFiles, deletedFiles, files);
+            journal.save(journalFile);
+            this.apply(journal, stateFile, journalFile, staging);
+
+            AxolotlMod.LOGGER.info("Mod directory synced in " + (System.currentTimeMillis() - start) + "ms, downloaded "
+                    + downloadedBytes / 1024 + " KiB");
+        } finally {
+            pool.shutdown();
+
+            if (!journalFile.exists())
+                FileUtils.deleteDirectory(staging);
+        }
+    }
+
+    private Map<String, String> fetchManifest() throws IOException {
+        final Request request = this.request(HttpUrl.get(String.format(this.mod.getConfig().getBucketConfig().getBucketApiUrl(), "modfolder/manifest")));
+        final Map<String, String> manifest;
+
+        try (final Response response = HTTP_CLIENT.newCall(request).execute()) {
+            final ResponseBody body = response.body();
+
+            if (!response.isSuccessful() || body == null)
+                throw new IOException("Bucket responded with " + response.code() + " " + response.message());
+
+            manifest = GSON.fromJson(body.string(), new TypeToken<TreeMap<String, String>>() {
+            }.getType());
+        } catch (final JsonParseException e) {
+            throw new IOException("Bucket responded with an invalid mod folder manifest", e);
+        }
+
+        if (manifest == null)
+            throw new IOException("Bucket responded with an empty mod folder manifest");
+
+        final Map<String, String> files = new TreeMap<>();
+
+        for (final Map.Entry<String, String> entry : manifest.entrySet()) {
+            final String path = entry.getKey();
+
+            if (EXCLUDED_FILES.contains(path) || path.startsWith(STAGING_DIRECTORY + "/"))
+                continue;
+
+            if (path.isEmpty() || path.startsWith("/") || path.contains("\\") || path.matches("(.*/)?\\.\\.(/.*)?") || entry.getValue() == null)
+                throw new IOException("Bucket responded with an invalid mod folder entry: " + path);
+
+            files.put(path, entry.getValue());
+        }
+
+        return files;
+    }
+
+    private Map<String, BuildManifest.InputRecord> hashLocalFiles(final Set<String> paths, final SyncState previousState, final Executor executor)
+            throws IOException {
+        final Map<String, CompletableFuture<BuildManifest.InputRecord>> futures = new TreeMap<>();
+
+        for (final String path : paths) {
+            final File file = new File(this.mod.getModFolder(), path);
+
+            if (!file.isFile())
+                continue;
+
+            futures.put(path, AsyncUtil.supplyAsync(() -> {
+                final BuildManifest.InputRecord previousRecord = previousState.getFiles().get(path);
+                final long size = file.length();
+                final long modified = file.lastModified();
+
+                // Untouched files keep the hash they were synced with
+                if (previousRecord != null && previousRecord.getSize() == size && previousRecord.getModified() == modified)
+                    return previousRecord;
+
+                return new BuildManifest.InputRecord(HashUtil.sha1(file), size, modified);
+            }, executor));
+        }
+
+        AsyncUtil.join(CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)));
+
+        final Map<String, BuildManifest.InputRecord> records = new TreeMap<>();
+        futures.forEach((path, future) -> records.put(path, future.join()));
+        return records;
+    }
+
+    /**
+     * @return the size of the downloaded file
+     */
+    private long download(final String path, final String expectedHash, final File output) throws IOException {
+        final HttpUrl url = HttpUrl.get(String.format(this.mod.getConfig().getBucketConfig().getBucketApiUrl(), "modfolder/file"))
+                .newBuilder()
+                .addQueryParameter("path", path)
+                .build();
+
+        try (final Response response = HTTP_CLIENT.newCall(this.request(url)).execute()) {
+            final ResponseBody body = response.body();
+
+            if (!response.isSuccessful() || body == null)
+                throw new IOException("Bucket responded with " + response.code() + " " + response.message() + " for " + path);
+
+            final File parent = output.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+                throw new IOException("Failed to create directory " + parent);
+
+            final MessageDigest digest = HashUtil.sha1();
+            final byte[] buffer = new byte[64 * 1024];
+            long size = 0;
+
+            try (final InputStream inputStream = body.byteStream();
+                 final OutputStream outputStream = Files.newOutputStream(output.toPath())) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    outputStream.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+
+            final String hash = HashUtil.toHex(digest.digest());
+
+            if (!hash.equalsIgnoreCase(expectedHash))
+                throw new IOException("Downloaded " + path + " has hash " + hash + " but the manifest lists " + expectedHash);
+
+            return size;
+        }
+    }
+
+    private Request request(final HttpUrl url) {
+        return new Request.Builder()
+                .url(url)
+                .addHeader("X-API-Key", this.mod.getConfig().getBucketConfig().getBucketApiKey())
+                .get()
+                .build();
+    }
+
+    /**
+     * Moves the staged files into place and deletes the removed ones. Running it twice has the same result, so an
+     * interrupted journal can simply be applied again.
+     */
+    private void apply(final Journal journal, final File stateFile, final File journalFile, final File staging) throws IOException {
+        final File modFolder = this.mod.getModFolder();
+
+        for (final String path : journal.getChangedFiles()) {
+            final File stagedFile = new File(staging, path);
+
+            // Already moved before the interruption
+            if (!stagedFile.exists())
+                continue;
+
+            final File file = new File(modFolder, path);
+            final File parent = file.getParentFile();
+
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+                throw new IOException("Failed to create directory " + parent);
+
+            try {
+                Files.move(stagedFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(stagedFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        for (final String path : journal.getDeletedFiles()) {
+            Files.deleteIfExists(new File(modFolder, path).toPath());
+        }
+
+        new SyncState(journal.getFiles()).save(stateFile);
+        Files.delete(journalFile.toPath());
+        FileUtils.deleteDirectory(staging);
+    }
+
+    /**
+     * The files the last sync left in the mod folder.
+     */
+    @Data
+    private static class SyncState {
+
+        @SerializedName("files")
+        private final Map<String, BuildManifest.InputRecord> files;
+
+        private static SyncState load(final File file) {
+            if (file.exists()) {
+                try {
+                    final SyncState state = GSON.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8), SyncState.class);
+
+                    if (state != null && state.getFiles() != null)
+                        return state;
+                } catch (final IOException | JsonParseException e) {
+                    AxolotlMod.LOGGER.warn("Unable to read mod folder sync state, hashing all files", e);
+                }
+            }
+
+            return new SyncState(new TreeMap<>());
+        }
+
+        private void save(final File file) throws IOException {
+            writeAtomically(file, GSON.toJson(this));
+        }
+    }
+
+    @Data
+    private static class Journal {
+
+        @SerializedName("changed_files")
+        private final List<String> changedFiles;
+
+        @SerializedName("deleted_files")
+        private final List<String> deletedFiles;
+
+        @SerializedName("files")
+        private final Map<String, BuildManifest.InputRecord> files;
+
+        private static Journal load(final File file) throws IOException {
+            try {
+                final Journal journal = GSON.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8), Journal.class);
+
+                if (journal != null && journal.getChangedFiles() != null && journal.getDeletedFiles() != null && journal.getFiles() != null)
+                    return journal;
+            } catch (final JsonParseException e) {
+                throw new IOException("Mod folder sync journal is corrupted", e);
+            }
+
+            throw new IOException("Mod folder sync journal is incomplete");
+        }
+
+        private void save(final File file) throws IOException {
+            writeAtomically(file, GSON.toJson(this));
+        }
+    }
+
+    private static void writeAtomically(final File file, final String content) throws IOException {
+        final File temporaryFile = new File(file.getPath() + ".tmp");
+        FileUtils.writeStringToFile(temporaryFile, content, StandardCharsets.UTF_8);
+
+        try {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
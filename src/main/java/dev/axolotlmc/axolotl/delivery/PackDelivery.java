@@ -0,0 +1,346 @@
+package dev.axolotlmc.axolotl.delivery;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.config.bucket.PackResendPolicy;
+import dev.axolotlmc.axolotl.api.config.bucket.ResourcePackConfig;
+import dev.axolotlmc.axolotl.api.event.AllowPlayerActionCallback;
+import dev.axolotlmc.axolotl.api.event.ResourcePackStatusCallback;
+import lombok.RequiredArgsConstructor;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.network.packet.c2s.play.ResourcePackStatusC2SPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends the resource pack to players, both on join and whenever a new pack becomes ready.
+ * Failed downloads are sent again with a growing delay, players that declined the pack are not asked again for the same pack.
+ *
+ * @author Kenox
+ */
+@RequiredArgsConstructor
+public class PackDelivery {
+
+    private static final long MAX_RETRY_DELAY_SECONDS = 300;
+    private static final int GATE_TELEPORT_INTERVAL_TICKS = 20;
+
+    private final AxolotlMod mod;
+    private final Map<UUID, String> sentHashes = new ConcurrentHashMap<>();
+    private final Map<UUID, GatePosition> gatedPlayers = new ConcurrentHashMap<>();
+    private final AtomicReference<PackDeliverySnapshot> snapshot = new AtomicReference<>();
+    @Nullable private PackStatusTracker statusTracker;
+    private PackSendScheduler sendScheduler;
+    private volatile MinecraftServer server;
+
+    public void register() {
+        try {
+            this.statusTracker = new PackStatusTracker(new File(this.mod.getModFolder(), "pack-status.dat"));
+        } catch (final IOException e) {
+            AxolotlMod.LOGGER.error("Unable to open pack status file, failed downloads are not sent again", e);
+        }
+
+        this.refreshSnapshot();
+        this.sendScheduler = new PackSendScheduler(this::admitPack, this::sendQueueMessage, this.snapshot::get);
+        this.sendScheduler.register();
+
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            this.server = server;
+            // The resource pack exists by now, so the join message gets its shift
+            this.refreshSnapshot();
+        });
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            this.server = null;
+
+            if (this.statusTracker == null)
+                return;
+
+            try {
+                this.statusTracker.close();
+            } catch (final IOException e) {
+                AxolotlMod.LOGGER.warn("Unable to save pack status file", e);
+            }
+        });
+
+        // Send pack to player
+        ServerPlayConnectionEvents.JOIN.register((handler, packetSender, server) -> {
+            if (this.statusTracker != null)
+                this.statusTracker.resetAttempts(handler.player.getUuid());
+
+            final ServerPlayerEntity player = handler.player;
+            this.requestPack(player, () -> player.sendMessage(this.snapshot.get().getJoinMessage()));
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            this.sentHashes.remove(handler.player.getUuid());
+            this.gatedPlayers.remove(handler.player.getUuid());
+            this.sendScheduler.remove(handler.player.getUuid());
+            AxolotlMod.METRICS.onDisconnect(handler.player.getUuid());
+        });
+
+        ResourcePackStatusCallback.EVENT.register((player, status) -> {
+            AxolotlMod.METRICS.onPackStatus(player.getUuid(), status);
+            this.onPackStatus(player, status);
+        });
+
+        AllowPlayerActionCallback.EVENT.register(this::allowAction);
+    }
+
+    /**
+     * Rebuilds the packet and messages sent on join, after the pack, its url or the glyphs changed.
+     */
+    public void refreshSnapshot() {
+        this.snapshot.set(PackDeliverySnapshot.create(this.mod));
+    }
+
+    /**
+     * Applies the configured {@link PackResendPolicy} after the pack url and hash changed.
+     * Without one, players only get the new pack right away when hot reloading is enabled.
+     */
+    public void onPackUpdated() {
+        final MinecraftServer server = this.server;
+        final ResourcePackConfig resourcePackConfig = this.mod.getConfig().getResourcePackConfig();
+        final PackResendPolicy defaultPolicy = resourcePackConfig.isHotReload() ? PackResendPolicy.IMMEDIATELY : PackResendPolicy.NEVER;
+        final PackResendPolicy resendPolicy = resourcePackConfig.getResendPolicy() == null
+                ? defaultPolicy : resourcePackConfig.getResendPolicy();
+
+        if (server == null || resendPolicy == PackResendPolicy.NEVER)
+            return;
+
+        if (resendPolicy == PackResendPolicy.DELAYED) {
+            AxolotlMod.LOGGER.info("Sending new pack to online players in " + resourcePackConfig.getResendDelaySeconds() + "s");
+            CompletableFuture.delayedExecutor(resourcePackConfig.getResendDelaySeconds(), TimeUnit.SECONDS, server)
+                    .execute(() -> this.resendPack(server));
+        } else {
+            server.execute(() -> this.resendPack(server));
+        }
+    }
+
+    /**
+     * @return whether the pack was sent
+     */
+    public boolean sendPack(final ServerPlayerEntity player) {
+        final PackDeliverySnapshot snapshot = this.snapshot.get();
+
+        if (!snapshot.isSendPackOnJoin()) {
+            AxolotlMod.LOGGER.warn("Cancelling pack send to player due to configuration..");
+            return false;
+        }
+
+        final String hash = snapshot.getHash();
+
+        if (hash == null || snapshot.getPacket() == null) {
+            AxolotlMod.LOGGER.warn("Unable to send resource pack to player as hash is null or empty");
+            return false;
+        }
+
+        final PackStatusTracker.Entry entry = this.statusTracker == null ? null : this.statusTracker.get(player.getUuid(), hash);
+
+        // The client saved the decline for this server and would only decline again
+        if (!snapshot.isForcePack() && entry != null && entry.getStatus() == PackStatusTracker.Status.DECLINED)
+            return false;
+
+        // Only a failed download is worth sending the same pack again within one session
+        if (hash.equals(this.sentHashes.get(player.getUuid())) && (entry == null || entry.getStatus() != PackStatusTracker.Status.FAILED))
+            return false;
+
+        player.networkHandler.sendPacket(snapshot.getPacket());
+        final boolean firstPack = this.sentHashes.put(player.getUuid(), hash) == null;
+        AxolotlMod.METRICS.onPackSent(player.getUuid(), hash);
+
+        // Players already playing keep playing while a newer pack loads
+        if (firstPack && snapshot.isGateUntilLoaded())
+            this.gate(player);
+
+        if (this.statusTracker != null) {
+            try {
+                this.statusTracker.onSent(player.getUuid(), hash);
+            } catch (final IOException e) {
+                AxolotlMod.LOGGER.warn("Unable to track pack status of " + player.getName().getString(), e);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Sends the pack once the {@link PackSendScheduler} admits it. Players that loaded this pack before have it cached
+     * and get it right away.
+     *
+     * @param afterSend runs once the pack was sent
+     */
+    public void requestPack(final ServerPlayerEntity player, @Nullable final Runnable afterSend) {
+        final PackDeliverySnapshot snapshot = this.snapshot.get();
+        final String hash = snapshot.getHash();
+        final PackStatusTracker.Entry entry = hash == null || this.statusTracker == null ? null : this.statusTracker.get(player.getUuid(), hash);
+
+        // Players also wait in place for their first pack while they are queued
+        if (snapshot.isGateUntilLoaded() && !this.sentHashes.containsKey(player.getUuid()))
+            this.gate(player);
+
+        if (entry != null && entry.getStatus() == PackStatusTracker.Status.LOADED) {
+            if (this.admitPack(player) && afterSend != null)
+                afterSend.run();
+            return;
+        }
+
+        this.sendScheduler.enqueue(player.getUuid(), afterSend);
+    }
+
+    /**
+     * @return whether the player still waits for the pack before being able to play
+     */
+    public boolean isGated(final ServerPlayerEntity player) {
+        return this.gatedPlayers.containsKey(player.getUuid());
+    }
+
+    private void gate(final ServerPlayerEntity player) {
+        final GatePosition position = new GatePosition(player.getX(), player.getY(), player.getZ(), player.getYaw(), player.getPitch());
+
+        if (this.gatedPlayers.putIfAbsent(player.getUuid(), position) == null)
+            position.teleport(player, this.getTicks());
+    }
+
+    private boolean allowAction(final ServerPlayerEntity player) {
+        final GatePosition position = this.gatedPlayers.get(player.getUuid());
+
+        if (position == null)
+            return true;
+
+        // The client keeps moving on its own while its moves are dropped, it is only put back now and then instead of on every packet
+        final int ticks = this.getTicks();
+
+        if (ticks - position.lastTeleportTick >= GATE_TELEPORT_INTERVAL_TICKS)
+            position.teleport(player, ticks);
+        return false;
+    }
+
+    private int getTicks() {
+        final MinecraftServer server = this.server;
+        return server == null ? 0 : server.getTicks();
+    }
+
+    private boolean admitPack(final UUID uuid) {
+        final ServerPlayerEntity player = this.getPlayer(uuid);
+        return player != null && this.admitPack(player);
+    }
+
+    private void sendQueueMessage(final UUID uuid, final String message) {
+        final ServerPlayerEntity player = this.getPlayer(uuid);
+
+        if (player != null)
+            player.sendMessage(Text.literal(message), true);
+    }
+
+    @Nullable
+    private ServerPlayerEntity getPlayer(final UUID uuid) {
+        final MinecraftServer server = this.server;
+        return server == null ? null : server.getPlayerManager().getPlayer(uuid);
+    }
+
+    private boolean admitPack(final ServerPlayerEntity player) {
+        if (this.sendPack(player))
+            return true;
+
+        // Nothing to wait for when the first pack was not sent at all
+        if (!this.sentHashes.containsKey(player.getUuid()))
+            this.gatedPlayers.remove(player.getUuid());
+        return false;
+    }
+
+    private void onPackStatus(final ServerPlayerEntity player, final ResourcePackStatusC2SPacket.Status status) {
+        final String hash = this.sentHashes.get(player.getUuid());
+
+        if (hash == null || status == ResourcePackStatusC2SPacket.Status.ACCEPTED)
+            return;
+
+        this.sendScheduler.onDownloadFinished(player.getUuid());
+
+        PackStatusTracker.Entry entry = null;
+
+        if (this.statusTracker != null) {
+            try {
+                entry = this.statusTracker.onStatus(player.getUuid(), hash, status);
+            } catch (final IOException e) {
+                AxolotlMod.LOGGER.warn("Unable to track pack status of " + player.getName().getString(), e);
+            }
+        }
+
+        final ResourcePackConfig resourcePackConfig = this.mod.getConfig().getResourcePackConfig();
+        final MinecraftServer server = this.server;
+
+        if (status == ResourcePackStatusC2SPacket.Status.FAILED_DOWNLOAD && entry != null && server != null
+                && entry.getFailedAttempts() <= resourcePackConfig.getDownloadRetries()) {
+            // Doubles the delay after every failed attempt of the same session
+            final long baseDelaySeconds = resourcePackConfig.getDownloadRetryDelaySeconds() > 0 ? resourcePackConfig.getDownloadRetryDelaySeconds() : 5;
+            final long delaySeconds = Math.min(baseDelaySeconds << Math.min(entry.getFailedAttempts() - 1, 16), MAX_RETRY_DELAY_SECONDS);
+
+            AxolotlMod.LOGGER.info("Sending pack to " + player.getName().getString() + " again in " + delaySeconds + "s (attempt "
+                    + entry.getFailedAttempts() + " of " + resourcePackConfig.getDownloadRetries() + " failed)");
+            CompletableFuture.delayedExecutor(delaySeconds, TimeUnit.SECONDS, server)
+                    .execute(() -> this.retrySend(server, player.getUuid(), hash));
+            return;
+        }
+
+        if (this.gatedPlayers.remove(player.getUuid()) == null || status == ResourcePackStatusC2SPacket.Status.SUCCESSFULLY_LOADED)
+            return;
+
+        // Without the pack a forced pack leaves nothing to play with, the client already leaves by itself after declining
+        if (status == ResourcePackStatusC2SPacket.Status.FAILED_DOWNLOAD && resourcePackConfig.isForcePack())
+            player.networkHandler.disconnect(Text.literal("Unable to download the resource pack, please try again later"));
+    }
+
+    private void retrySend(final MinecraftServer server, final UUID uuid, final String hash) {
+        final ServerPlayerEntity player = server.getPlayerManager().getPlayer(uuid);
+
+        // The player left, or got a newer pack meanwhile
+        if (player == null || !hash.equals(this.sentHashes.get(uuid)) || !hash.equals(this.mod.getConfig().getHash()))
+            return;
+
+        this.requestPack(player, null);
+    }
+
+    private void resendPack(final MinecraftServer server) {
+        final String hash = this.mod.getConfig().getHash();
+        int resent = 0;
+
+        for (final ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            if (hash == null || hash.equals(this.sentHashes.get(player.getUuid())))
+                continue;
+
+            this.requestPack(player, null);
+            resent++;
+        }
+
+        AxolotlMod.LOGGER.info("Sending new pack to " + resent + " online players");
+    }
+
+    /**
+     * Where a player waits for the first pack, the client is put back there while it is gated.
+     */
+    @RequiredArgsConstructor
+    private static class GatePosition {
+
+        private final double x;
+        private final double y;
+        private final double z;
+        private final float yaw;
+        private final float pitch;
+        private int lastTeleportTick;
+
+        private void teleport(final ServerPlayerEntity player, final int ticks) {
+            player.networkHandler.requestTeleport(this.x, this.y, this.z, this.yaw, this.pitch);
+            this.lastTeleportTick = ticks;
+        }
+    }
+}
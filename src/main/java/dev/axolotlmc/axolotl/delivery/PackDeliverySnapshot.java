@@ -0,0 +1,63 @@
+package dev.axolotlmc.axolotl.delivery;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.config.AxolotlConfig;
+import dev.axolotlmc.axolotl.api.config.bucket.DeliveryConfig;
+import dev.axolotlmc.axolotl.api.config.bucket.ResourcePackConfig;
+import dev.axolotlmc.axolotl.pack.ResourcePack;
+import lombok.Data;
+import net.minecraft.network.packet.s2c.play.ResourcePackSendS2CPacket;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+/**
+ * Everything a join needs to deliver one pack version, built once whenever the pack or its url changes.
+ * The packet and texts are shared by all players and must not be modified.
+ *
+ * @author Kenox
+ */
+@Data
+public class PackDeliverySnapshot {
+
+    private final boolean sendPackOnJoin;
+    private final boolean forcePack;
+    private final boolean gateUntilLoaded;
+
+    @Nullable private final String hash;
+
+    /**
+     * Null when there is no pack to send yet.
+     */
+    @Nullable private final ResourcePackSendS2CPacket packet;
+    private final long packSize;
+    private final Text joinMessage;
+
+    /**
+     * Null when pack sends are not throttled.
+     */
+    @Nullable private final DeliveryConfig deliveryConfig;
+
+    public static PackDeliverySnapshot create(final AxolotlMod mod) {
+        final AxolotlConfig config = mod.getConfig();
+        final ResourcePackConfig resourcePackConfig = config.getResourcePackConfig();
+        final String hash = config.getHash() == null || config.getHash().isEmpty() ? null : config.getHash();
+        final ResourcePackSendS2CPacket packet = hash == null ? null : new ResourcePackSendS2CPacket(
+                config.getPackUrl(),
+                hash,
+                resourcePackConfig.isForcePack(),
+                resourcePackConfig.getPromptMessage() == null ? null : Text.literal(resourcePackConfig.getPromptMessage())
+        );
+
+        // The resource pack is created after the delivery, until then the shift is left out
+        final ResourcePack resourcePack = mod.getResourcePack();
+        final Text joinMessage = (resourcePack == null ? Text.empty() : resourcePack.shiftText(67, true).copy()).append(Text.literal("Hey!"));
+
+        final DeliveryConfig deliveryConfig = config.getDeliveryConfig();
+
+        return new PackDeliverySnapshot(resourcePackConfig.isSendPackOnJoin(), resourcePackConfig.isForcePack(), resourcePackConfig.isGateUntilLoaded(),
+                hash, packet, new File(mod.getModFolder(), "pack.zip").length(), joinMessage,
+                deliveryConfig != null && deliveryConfig.isEnabled() ? deliveryConfig : null);
+    }
+}
@@ -0,0 +1,462 @@
+package dev.axolotlmc.axolotl.delivery;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.config.bucket.PackServerConfig;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 server that hosts pack.zip from the server process. The body is sent with
+ * {@link FileChannel#transferTo}, which uses sendfile where the OS supports it.
+ *
+ * @author Kenox
+ */
+public class PackHttpServer implements Closeable {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_MAX_CONNECTIONS = 64;
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 15;
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+
+    private final PackServerConfig config;
+    private final Semaphore connections;
+    private final ExecutorService workers;
+    private final AtomicInteger workerCounter = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+    private volatile ServedPack servedPack;
+    @Getter private final String publicUrl;
+
+    public PackHttpServer(final PackServerConfig config) {
+        this.config = config;
+        this.connections = new Semaphore(config.getMaxConnections() > 0 ? config.getMaxConnections() : DEFAULT_MAX_CONNECTIONS);
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "Axolotl Pack Server #" + this.workerCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final String publicUrl = config.getPublicUrl() == null || config.getPublicUrl().isEmpty()
+                ? "http://localhost:" + this.getPort() : config.getPublicUrl();
+        this.publicUrl = publicUrl.endsWith("/") ? publicUrl.substring(0, publicUrl.length() - 1) : publicUrl;
+    }
+
+    public void start() throws IOException {
+        this.start(this.config.getBindAddress() == null || this.config.getBindAddress().isEmpty()
+                ? new InetSocketAddress(this.getPort()) : new InetSocketAddress(this.config.getBindAddress(), this.getPort()));
+    }
+
+    void start(final InetSocketAddress address) throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(address);
+
+        final Thread acceptThread = new Thread(this::acceptConnections, "Axolotl Pack Server");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        if (this.config.getPublicUrl() == null || this.config.getPublicUrl().isEmpty())
+            AxolotlMod.LOGGER.warn("No public url configured for the pack server, clients will try to download from " + this.publicUrl);
+
+        AxolotlMod.LOGGER.info("Pack server listening on " + address);
+    }
+
+    /**
+     * Starts serving {@code file} as the current pack. The file is kept open, so it can be replaced on disk
+     * while older downloads are still running.
+     */
+    public void publish(final File file, final String hash) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        final ServedPack previousPack = this.servedPack;
+
+        this.servedPack = new ServedPack(channel, hash, channel.size());
+
+        if (previousPack != null)
+            previousPack.release();
+    }
+
+    public String getUrl(final String hash) {
+        return this.publicUrl + "/" + hash + ".zip";
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.serverChannel != null)
+            this.serverChannel.close();
+
+        this.workers.shutdownNow();
+
+        final ServedPack servedPack = this.servedPack;
+        if (servedPack != null)
+            servedPack.release();
+    }
+
+    /**
+     * @return the port the server is bound to, differs from the configured one when started on an ephemeral port
+     */
+    int getLocalPort() throws IOException {
+        return ((InetSocketAddress) this.serverChannel.getLocalAddress()).getPort();
+    }
+
+    private int getPort() {
+        return this.config.getPort() > 0 ? this.config.getPort() : DEFAULT_PORT;
+    }
+
+    private void acceptConnections() {
+        while (this.serverChannel.isOpen()) {
+            try {
+                final SocketChannel channel = this.serverChannel.accept();
+
+                if (!this.connections.tryAcquire()) {
+                    this.rejectConnection(channel);
+                    continue;
+                }
+
+                this.workers.execute(() -> {
+                    try {
+                        this.handleConnection(channel);
+                    } finally {
+                        this.connections.release();
+                    }
+                });
+            } catch (final ClosedChannelException e) {
+                return;
+            } catch (final IOException e) {
+                AxolotlMod.LOGGER.warn("Pack server failed to accept a connection", e);
+            }
+        }
+    }
+
+    private void rejectConnection(final SocketChannel channel) {
+        try (channel) {
+            this.writeHead(channel, 503, "Service Unavailable", 0, false, "Retry-After: 1\r\n");
+        } catch (final IOException ignored) {
+            // The client is gone already
+        }
+    }
+
+    private void handleConnection(final SocketChannel channel) {
+        try (channel) {
+            final Socket socket = channel.socket();
+            socket.setSoTimeout((this.config.getIdleTimeoutSeconds() > 0
+                    ? this.config.getIdleTimeoutSeconds() : DEFAULT_IDLE_TIMEOUT_SECONDS) * 1000);
+            socket.setTcpNoDelay(true);
+
+            final RequestReader reader = new RequestReader(socket.getInputStream());
+            Request request;
+
+            while ((request = reader.next()) != null) {
+                if (!this.respond(channel, request))
+                    return;
+            }
+        } catch (final SocketTimeoutException ignored) {
+            // Idle keep-alive connection
+        } catch (final IOException e) {
+            AxolotlMod.LOGGER.debug("Pack server connection failed", e);
+        }
+    }
+
+    /**
+     * @return whether the connection can be kept alive
+     */
+    private boolean respond(final SocketChannel channel, final Request request) throws IOException {
+        if (request.malformed) {
+            this.writeHead(channel, 400, "Bad Request", 0, false, "");
+            return false;
+        }
+
+        final boolean head = request.method.equals("HEAD");
+
+        if (!head && !request.method.equals("GET")) {
+            this.writeHead(channel, 405, "Method Not Allowed", 0, false, "Allow: GET, HEAD\r\n");
+            return false;
+        }
+
+        if (this.servedPack == null) {
+            this.writeHead(channel, 503, "Service Unavailable", 0, request.keepAlive, "Retry-After: 5\r\n");
+            return request.keepAlive;
+        }
+
+        final int queryStart = request.target.indexOf('?');
+        final ServedPack servedPack = this.acquirePack(queryStart == -1 ? request.target : request.target.substring(0, queryStart));
+
+        if (servedPack == null) {
+            this.writeHead(channel, 404, "Not Found", 0, request.keepAlive, "");
+            return request.keepAlive;
+        }
+
+        try {
+
+            final String etag = "\"" + servedPack.hash + "\"";
+            final String cacheHeaders = "ETag: " + etag + "\r\nAccept-Ranges: bytes\r\nCache-Control: public, max-age=31536000\r\n";
+            final String ifNoneMatch = request.headers.get("if-none-match");
+
+            if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+                this.writeHead(channel, 304, "Not Modified", -1, request.keepAlive, cacheHeaders);
+                return request.keepAlive;
+            }
+
+            long start = 0;
+            long end = servedPack.size - 1;
+            final String range = request.headers.get("range");
+            final String ifRange = request.headers.get("if-range");
+
+            if (range != null && (ifRange == null || ifRange.contains(etag))) {
+                final long[] parsedRange = parseRange(range, servedPack.size);
+
+                if (parsedRange == null) {
+                    this.writeHead(channel, 416, "Range Not Satisfiable", 0, request.keepAlive,
+                            cacheHeaders + "Content-Range: bytes */" + servedPack.size + "\r\n");
+                    return request.keepAlive;
+                }
+
+                if (parsedRange.length == 2) {
+                    start = parsedRange[0];
+                    end = parsedRange[1];
+                }
+            }
+
+            final long length = end - start + 1;
+
+            if (start == 0 && end == servedPack.size - 1) {
+                this.writeHead(channel, 200, "OK", length, request.keepAlive, cacheHeaders + "Content-Type: application/zip\r\n");
+            } else {
+                this.writeHead(channel, 206, "Partial Content", length, request.keepAlive, cacheHeaders
+                        + "Content-Type: application/zip\r\nContent-Range: bytes " + start + "-" + end + "/" + servedPack.size + "\r\n");
+            }
+
+            if (!head)
+                this.transfer(servedPack.channel, start, length, channel);
+
+            return request.keepAlive;
+        } finally {
+            servedPack.release();
+        }
+    }
+
+    @Nullable
+    private ServedPack acquirePack(final String path) {
+        while (true) {
+            final ServedPack servedPack = this.findPack(path);
+
+            if (servedPack == null || servedPack.acquire())
+                return servedPack;
+        }
+    }
+
+    @Nullable
+    private ServedPack findPack(final String path) {
+        final ServedPack servedPack = this.servedPack;
+
+        return servedPack != null && (path.equals("/pack.zip") || path.equals("/" + servedPack.hash + ".zip")) ? servedPack : null;
+    }
+
+    private void transfer(final FileChannel source, long position, long remaining, final SocketChannel target) throws IOException {
+        while (remaining > 0) {
+            final long transferred = source.transferTo(position, remaining, target);
+
+            if (transferred <= 0)
+                throw new IOException("Pack transfer stalled");
+
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private void writeHead(final SocketChannel channel, final int status, final String reason, final long contentLength,
+                           final boolean keepAlive, final String headers) throws IOException {
+        final StringBuilder head = new StringBuilder(256)
+                .append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n")
+                .append("Server: Axolotl\r\n")
+                .append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n")
+                .append(headers);
+
+        if (contentLength >= 0)
+            head.append("Content-Length: ").append(contentLength).append("\r\n");
+
+        final ByteBuffer buffer = ByteBuffer.wrap(head.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return {@code [start, end]} of a single byte range, an empty array if the header should be ignored
+     * or {@code null} if the range can not be satisfied
+     */
+    @Nullable
+    private static long[] parseRange(final String range, final long size) {
+        final String value = range.trim();
+
+        // Multiple ranges and other units are answered with the whole pack
+        if (!value.startsWith("bytes=") || value.indexOf(',') != -1)
+            return new long[0];
+
+        final String spec = value.substring("bytes=".length()).trim();
+        final int separator = spec.indexOf('-');
+
+        if (separator == -1)
+            return new long[0];
+
+        try {
+            final String startValue = spec.substring(0, separator).trim();
+            final String endValue = spec.substring(separator + 1).trim();
+
+            if (startValue.isEmpty()) {
+                // Suffix range: the last n bytes
+                final long suffix = Long.parseLong(endValue);
+
+                if (suffix <= 0 || size == 0)
+                    return null;
+
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+
+            final long start = Long.parseLong(startValue);
+            final long end = endValue.isEmpty() ? size - 1 : Math.min(Long.parseLong(endValue), size - 1);
+
+            if (start >= size || start > end)
+                return null;
+
+            return new long[]{start, end};
+        } catch (final NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class ServedPack {
+
+        private final FileChannel channel;
+        private final String hash;
+        private final long size;
+        // One reference is held by the server for as long as this is the current pack
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private boolean acquire() {
+            int current;
+
+            do {
+                current = this.references.get();
+
+                if (current == 0)
+                    return false;
+            } while (!this.references.compareAndSet(current, current + 1));
+
+            return true;
+        }
+
+        private void release() {
+            if (this.references.decrementAndGet() != 0)
+                return;
+
+            try {
+                this.channel.close();
+            } catch (final IOException ignored) {
+                // Nothing left to read from it anyway
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Request {
+
+        private final String method;
+        private final String target;
+        private final Map<String, String> headers;
+        private final boolean keepAlive;
+        private final boolean malformed;
+    }
+
+    /**
+     * Reads request heads from a keep-alive connection, bytes after a head are kept for the next request.
+     */
+    @RequiredArgsConstructor
+    private static class RequestReader {
+
+        private final InputStream inputStream;
+        private final byte[] buffer = new byte[MAX_HEADER_SIZE];
+        private int start;
+        private int end;
+
+        @Nullable
+        private Request next() throws IOException {
+            int headEnd;
+
+            while ((headEnd = this.findHeadEnd()) == -1) {
+                if (this.start > 0) {
+                    System.arraycopy(this.buffer, this.start, this.buffer, 0, this.end - this.start);
+                    this.end -= this.start;
+                    this.start = 0;
+                }
+
+                if (this.end == this.buffer.length)
+                    return new Request("", "", Map.of(), false, true);
+
+                final int read = this.inputStream.read(this.buffer, this.end, this.buffer.length - this.end);
+
+                if (read == -1)
+                    return null;
+
+                this.end += read;
+            }
+
+            final String head = new String(this.buffer, this.start, headEnd - this.start, StandardCharsets.ISO_8859_1);
+            this.start = headEnd + 4;
+
+            final String[] lines = head.split("\r\n");
+            final String[] requestLine = lines[0].split(" ");
+
+            if (requestLine.length != 3)
+                return new Request("", "", Map.of(), false, true);
+
+            final Map<String, String> headers = new HashMap<>();
+
+            for (int i = 1; i < lines.length; i++) {
+                final int separator = lines[i].indexOf(':');
+
+                if (separator > 0)
+                    headers.put(lines[i].substring(0, separator).trim().toLowerCase(Locale.ROOT), lines[i].substring(separator + 1).trim());
+            }
+
+            // Requests with a body are not supported, so the connection can not be reused after them
+            final String contentLength = headers.get("content-length");
+            final boolean hasBody = (contentLength != null && !contentLength.equals("0")) || headers.containsKey("transfer-encoding");
+            final String connection = headers.getOrDefault("connection", "").toLowerCase(Locale.ROOT);
+            final boolean keepAlive = !hasBody && (requestLine[2].equals("HTTP/1.1")
+                    ? !connection.contains("close") : connection.contains("keep-alive"));
+
+            return new Request(requestLine[0], requestLine[1], headers, keepAlive, false);
+        }
+
+        private int findHeadEnd() {
+            for (int i = this.start; i + 3 < this.end; i++) {
+                if (this.buffer[i] == '\r' && this.buffer[i + 1] == '\n' && this.buffer[i + 2] == '\r' && this.buffer[i + 3] == '\n')
+                    return i;
+            }
+
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package dev.axolotlmc.axolotl.delivery;
+
+import dev.axolotlmc.axolotl.api.config.bucket.DeliveryConfig;
+import lombok.RequiredArgsConstructor;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Admits pack sends in join order through token buckets for sends and bandwidth and a limit of concurrent downloads,
+ * so a join storm does not hit the pack host all at once. Only used on the server thread.
+ *
+ * @author Kenox
+ */
+public class PackSendScheduler {
+
+    private static final String DEFAULT_QUEUE_MESSAGE = "Waiting for the resource pack download.. (%d of %d)";
+    private static final int MESSAGE_INTERVAL_TICKS = 20;
+    private static final int DEFAULT_DOWNLOAD_TIMEOUT_SECONDS = 60;
+
+    private final Predicate<UUID> sender;
+    private final BiConsumer<UUID, String> messenger;
+    private final Supplier<PackDeliverySnapshot> snapshot;
+    private final LongSupplier nanoClock;
+    private final Map<UUID, QueuedSend> queue = new LinkedHashMap<>();
+    private final Map<UUID, Long> downloads = new HashMap<>();
+    private double sendTokens = -1;
+    private double byteTokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param sender    sends the pack to an online player, returns whether it was sent
+     * @param messenger shows a player its place in the queue
+     */
+    public PackSendScheduler(final Predicate<UUID> sender, final BiConsumer<UUID, String> messenger,
+                             final Supplier<PackDeliverySnapshot> snapshot) {
+        this(sender, messenger, snapshot, System::nanoTime);
+    }
+
+    PackSendScheduler(final Predicate<UUID> sender, final BiConsumer<UUID, String> messenger,
+                      final Supplier<PackDeliverySnapshot> snapshot, final LongSupplier nanoClock) {
+        this.sender = sender;
+        this.messenger = messenger;
+        this.snapshot = snapshot;
+        this.nanoClock = nanoClock;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    public void register() {
+        ServerTickEvents.END_SERVER_TICK.register(server -> this.tick(server.getTicks()));
+    }
+
+    /**
+     * Queues the pack send, players already waiting keep their place.
+     *
+     * @param afterSend runs once the pack was sent
+     */
+    public void enqueue(final UUID player, @Nullable final Runnable afterSend) {
+        if (this.snapshot.get().getDeliveryConfig() == null) {
+            this.send(player, afterSend);
+            return;
+        }
+
+        this.queue.putIfAbsent(player, new QueuedSend(player, afterSend));
+    }
+
+    /**
+     * Frees the download slot of the player once the client reported the final status.
+     */
+    public void onDownloadFinished(final UUID player) {
+        this.downloads.remove(player);
+    }
+
+    public void remove(final UUID player) {
+        this.queue.remove(player);
+        this.downloads.remove(player);
+    }
+
+    void tick(final int ticks) {
+        final PackDeliverySnapshot snapshot = this.snapshot.get();
+        final DeliveryConfig deliveryConfig = snapshot.getDeliveryConfig();
+
+        // Sends queued while throttling was on are not left behind when it gets turned off
+        if (deliveryConfig == null) {
+            while (!this.queue.isEmpty()) {
+                this.admitNext();
+            }
+
+            this.downloads.clear();
+            return;
+        }
+
+        this.expireDownloads(deliveryConfig);
+        this.refill(deliveryConfig);
+
+        while (!this.queue.isEmpty() && this.canAdmit(deliveryConfig)) {
+            if (!this.admitNext())
+                continue;
+
+            if (deliveryConfig.getSendsPerSecond() > 0)
+                this.sendTokens--;
+
+            // The bucket may go into debt for a pack larger than one second of bandwidth, later sends wait until it is paid back
+            if (deliveryConfig.getBandwidthMibPerSecond() > 0)
+                this.byteTokens -= snapshot.getPackSize();
+        }
+
+        if (ticks % MESSAGE_INTERVAL_TICKS == 0)
+            this.sendQueueMessages(deliveryConfig);
+    }
+
+    private boolean canAdmit(final DeliveryConfig deliveryConfig) {
+        if (deliveryConfig.getSendsPerSecond() > 0 && this.sendTokens < 1)
+            return false;
+
+        if (deliveryConfig.getBandwidthMibPerSecond() > 0 && this.byteTokens <= 0)
+            return false;
+
+        return deliveryConfig.getMaxConcurrentDownloads() <= 0 || this.downloads.size() < deliveryConfig.getMaxConcurrentDownloads();
+    }
+
+    /**
+     * @return whether the pack was sent
+     */
+    private boolean admitNext() {
+        final Iterator<QueuedSend> iterator = this.queue.values().iterator();
+        final QueuedSend queuedSend = iterator.next();
+        iterator.remove();
+
+        if (!this.send(queuedSend.player, queuedSend.afterSend))
+            return false;
+
+        this.downloads.put(queuedSend.player, this.nanoClock.getAsLong());
+        return true;
+    }
+
+    private boolean send(final UUID player, @Nullable final Runnable afterSend) {
+        if (!this.sender.test(player))
+            return false;
+
+        if (afterSend != null)
+            afterSend.run();
+        return true;
+    }
+
+    private void refill(final DeliveryConfig deliveryConfig) {
+        final long now = this.nanoClock.getAsLong();
+        final double seconds = (now - this.lastRefillNanos) / 1e9;
+        this.lastRefillNanos = now;
+
+        final int sendBurst = Math.max(1, deliveryConfig.getSendBurst() > 0 ? deliveryConfig.getSendBurst() : deliveryConfig.getSendsPerSecond());
+        final double bytesPerSecond = deliveryConfig.getBandwidthMibPerSecond() * 1024.0 * 1024.0;
+
+        // Starts with a full bucket, so the first players after a restart do not wait
+        if (this.sendTokens < 0) {
+            this.sendTokens = sendBurst;
+            this.byteTokens = bytesPerSecond;
+            return;
+        }
+
+        this.sendTokens = Math.min(sendBurst, this.sendTokens + seconds * deliveryConfig.getSendsPerSecond());
+        this.byteTokens = Math.min(bytesPerSecond, this.byteTokens + seconds * bytesPerSecond);
+    }
+
+    private void expireDownloads(final DeliveryConfig deliveryConfig) {
+        final int timeoutSeconds = deliveryConfig.getDownloadTimeoutSeconds() > 0 ? deliveryConfig.getDownloadTimeoutSeconds() : DEFAULT_DOWNLOAD_TIMEOUT_SECONDS;
+        final long timeoutNanos = timeoutSeconds * 1_000_000_000L;
+        final long now = this.nanoClock.getAsLong();
+
+        // Clients that never answer must not hold their slot forever
+        this.downloads.values().removeIf(admittedAt -> now - admittedAt > timeoutNanos);
+    }
+
+    private void sendQueueMessages(final DeliveryConfig deliveryConfig) {
+        final String queueMessage = deliveryConfig.getQueueMessage() == null ? DEFAULT_QUEUE_MESSAGE : deliveryConfig.getQueueMessage();
+        int position = 0;
+
+        for (final QueuedSend queuedSend : this.queue.values()) {
+            position++;
+            this.messenger.accept(queuedSend.player, String.format(queueMessage, position, this.queue.size()));
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class QueuedSend {
+
+        private final UUID player;
+        @Nullable private final Runnable afterSend;
+    }
+}
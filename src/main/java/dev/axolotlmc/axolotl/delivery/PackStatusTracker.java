@@ -0,0 +1,214 @@
+package dev.axolotlmc.axolotl.delivery;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.util.HashUtil;
+import lombok.Data;
+import net.minecraft.network.packet.c2s.play.ResourcePackStatusC2SPacket;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Remembers the last pack each player was sent and what the client answered, in fixed size records of a memory mapped file.
+ * The records survive restarts, only the slot index is kept on the heap.
+ *
+ * @author Kenox
+ */
+public class PackStatusTracker implements Closeable {
+
+    private static final int MAGIC = 0x41585053; // "AXPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 48;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Record layout: uuid (16), sha-1 of the pack hash (20), status (1), failed attempts (1), padding (2), updated at (8)
+    private static final int HASH_OFFSET = 16;
+    private static final int STATUS_OFFSET = 36;
+    private static final int ATTEMPTS_OFFSET = 37;
+    private static final int UPDATED_OFFSET = 40;
+    private static final int HASH_LENGTH = 20;
+
+    private final FileChannel channel;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+
+    public PackStatusTracker(final File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (this.channel.size() < HEADER_SIZE || !this.load()) {
+            if (this.channel.size() >= HEADER_SIZE)
+                AxolotlMod.LOGGER.warn("Pack status file " + file.getName() + " is invalid, starting with an empty one");
+
+            this.channel.truncate(0);
+            this.map(INITIAL_CAPACITY);
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(4, VERSION);
+            this.buffer.putInt(8, 0);
+        }
+    }
+
+    /**
+     * @return the record of the player for this pack hash, null if the player last got another pack
+     */
+    @Nullable
+    public synchronized Entry get(final UUID player, final String hash) {
+        final Integer slot = this.slots.get(player);
+
+        if (slot == null)
+            return null;
+
+        final int offset = this.offset(slot);
+        final byte[] hashBytes = new byte[HASH_LENGTH];
+        this.buffer.get(offset + HASH_OFFSET, hashBytes);
+
+        if (!Arrays.equals(hashBytes, hashBytes(hash)))
+            return null;
+
+        // The file may be damaged, a record with an unknown status counts as missing
+        final int status = this.buffer.get(offset + STATUS_OFFSET) & 0xFF;
+
+        if (status >= Status.values().length)
+            return null;
+
+        return new Entry(Status.values()[status], this.buffer.get(offset + ATTEMPTS_OFFSET) & 0xFF,
+                this.buffer.getLong(offset + UPDATED_OFFSET));
+    }
+
+    public synchronized void onSent(final UUID player, final String hash) throws IOException {
+        final Entry entry = this.get(player, hash);
+        this.put(player, hash, Status.SENT, entry == null ? 0 : entry.getFailedAttempts());
+    }
+
+    /**
+     * @return the updated record, null if the status does not belong to the pack last sent to the player
+     */
+    @Nullable
+    public synchronized Entry onStatus(final UUID player, final String hash, final ResourcePackStatusC2SPacket.Status clientStatus) throws IOException {
+        final Entry entry = this.get(player, hash);
+
+        if (entry == null)
+            return null;
+
+        final Status status = Status.of(clientStatus);
+        final int failedAttempts = switch (status) {
+            case FAILED -> Math.min(entry.getFailedAttempts() + 1, Byte.MAX_VALUE);
+            case LOADED -> 0;
+            default -> entry.getFailedAttempts();
+        };
+
+        this.put(player, hash, status, failedAttempts);
+        return new Entry(status, failedAttempts, System.currentTimeMillis());
+    }
+
+    /**
+     * Starts counting failed downloads from zero again, a new session deserves a new set of retries.
+     */
+    public synchronized void resetAttempts(final UUID player) {
+        final Integer slot = this.slots.get(player);
+
+        if (slot != null)
+            this.buffer.put(this.offset(slot) + ATTEMPTS_OFFSET, (byte) 0);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+    }
+
+    private boolean load() throws IOException {
+        final MappedByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+            return false;
+
+        final int storedCount = header.getInt(8);
+
+        if (storedCount < 0 || HEADER_SIZE + (long) storedCount * RECORD_SIZE > this.channel.size())
+            return false;
+
+        this.map(Math.max(INITIAL_CAPACITY, storedCount));
+
+        for (int slot = 0; slot < storedCount; slot++) {
+            final int offset = this.offset(slot);
+            this.slots.put(new UUID(this.buffer.getLong(offset), this.buffer.getLong(offset + 8)), slot);
+        }
+
+        this.count = storedCount;
+        return true;
+    }
+
+    private void put(final UUID player, final String hash, final Status status, final int failedAttempts) throws IOException {
+        Integer slot = this.slots.get(player);
+
+        if (slot == null) {
+            if (this.count == this.capacity)
+                this.map(this.capacity * 2);
+
+            slot = this.count++;
+            this.slots.put(player, slot);
+            this.buffer.putLong(this.offset(slot), player.getMostSignificantBits());
+            this.buffer.putLong(this.offset(slot) + 8, player.getLeastSignificantBits());
+            this.buffer.putInt(8, this.count);
+        }
+
+        final int offset = this.offset(slot);
+        this.buffer.put(offset + HASH_OFFSET, hashBytes(hash));
+        this.buffer.put(offset + STATUS_OFFSET, (byte) status.ordinal());
+        this.buffer.put(offset + ATTEMPTS_OFFSET, (byte) failedAttempts);
+        this.buffer.putLong(offset + UPDATED_OFFSET, System.currentTimeMillis());
+    }
+
+    private void map(final int capacity) throws IOException {
+        // Mapping beyond the end grows the file, earlier records stay where they are
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        this.capacity = capacity;
+    }
+
+    private int offset(final int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    // Pack hashes are sha-1 hex strings already, hashing them again keeps the record size fixed for any hash format
+    private static byte[] hashBytes(final String hash) {
+        return HashUtil.sha1().digest(hash.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public enum Status {
+        SENT,
+        ACCEPTED,
+        LOADED,
+        DECLINED,
+        FAILED;
+
+        private static Status of(final ResourcePackStatusC2SPacket.Status status) {
+            return switch (status) {
+                case SUCCESSFULLY_LOADED -> LOADED;
+                case DECLINED -> DECLINED;
+                case FAILED_DOWNLOAD -> FAILED;
+                case ACCEPTED -> ACCEPTED;
+            };
+        }
+    }
+
+    @Data
+    public static class Entry {
+
+        private final Status status;
+        private final int failedAttempts;
+        private final long updatedAt;
+    }
+}
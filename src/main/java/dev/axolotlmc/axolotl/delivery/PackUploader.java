@@ -0,0 +1,345 @@
+package dev.axolotlmc.axolotl.delivery;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.config.bucket.BucketConfig;
+import dev.axolotlmc.axolotl.api.metrics.PhaseRecorder;
+import dev.axolotlmc.axolotl.util.AsyncUtil;
+import dev.axolotlmc.axolotl.util.HashUtil;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
+
+/**
+ * Uploads pack.zip to the bucket, one upload at a time on a background thread. Failed requests are retried with
+ * exponential backoff, and packs the bucket already has are not uploaded again.
+ * <p>
+ * Besides the single multipart {@code PUT pack}, the chunked mode uses these bucket endpoints:
+ * <ul>
+ *     <li>{@code HEAD pack?hash=<sha1>} responds 200 if the bucket has the pack, 404 otherwise</li>
+ *     <li>{@code GET pack/chunks?hash=<sha1>} responds with a json array of the chunk indexes already received</li>
+ *     <li>{@code PUT pack/chunks?hash=<sha1>&index=<i>&offset=<bytes>} stores one chunk, its SHA-1 is sent as {@code X-Chunk-SHA1}</li>
+ *     <li>{@code POST pack/chunks/complete?hash=<sha1>&chunks=<count>&size=<bytes>} joins the chunks and responds with the hash of the result</li>
+ * </ul>
+ * Chunks are identified by the pack hash, so an upload that failed, even in an earlier run, resumes with the missing chunks.
+ *
+ * @author Kenox
+ */
+@RequiredArgsConstructor
+public class PackUploader {
+
+    private static final int DEFAULT_CHUNK_SIZE_KIB = 4096;
+    private static final int DEFAULT_RETRIES = 5;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final MediaType ZIP = MediaType.parse("application/zip");
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(120, TimeUnit.SECONDS)
+            .writeTimeout(120, TimeUnit.SECONDS)
+            .build();
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Axolotl Pack Uploader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AxolotlMod mod;
+
+    /**
+     * Opens the pack right away, so the upload sends these bytes even if a rebuild replaces pack.zip while it waits
+     * for earlier uploads.
+     *
+     * @return future of the hash the bucket reported for the uploaded pack
+     */
+    public CompletableFuture<String> upload(final File pack, final String hash, final PhaseRecorder phase) {
+        final FileChannel channel;
+
+        try {
+            channel = FileChannel.open(pack.toPath(), StandardOpenOption.READ);
+        } catch (final IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return AsyncUtil.supplyAsync(() -> {
+            final UploadMetrics metrics = new UploadMetrics();
+
+            try (channel) {
+                return phase.measure(() -> this.uploadNow(channel, hash, metrics));
+            } finally {
+                // Failed uploads are recorded as well, their requests still used the bandwidth
+                phase.addEntries(metrics.requests);
+                phase.addBytesWritten(metrics.sentBytes);
+            }
+        }, EXECUTOR);
+    }
+
+    private String uploadNow(final FileChannel channel, final String hash, final UploadMetrics metrics) throws IOException {
+        final BucketConfig bucketConfig = this.mod.getConfig().getBucketConfig();
+
+        if (this.retry("check pack", metrics, () -> this.exists(hash))) {
+            AxolotlMod.LOGGER.info("Bucket already has pack " + hash + ", skipping upload");
+            return hash;
+        }
+
+        AxolotlMod.LOGGER.info("Uploading pack to bucket..");
+
+        final String uploadedHash = bucketConfig.isChunkedUpload()
+                ? this.uploadChunked(channel, hash, metrics)
+                : this.retry("upload pack", metrics, () -> this.uploadMultipart(channel, metrics));
+
+        metrics.log(channel.size());
+        return uploadedHash;
+    }
+
+    private String uploadMultipart(final FileChannel channel, final UploadMetrics metrics) throws IOException {
+        final RequestBody formBody = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("file", "pack.zip", new ChannelRequestBody(channel, 0, channel.size(), ZIP))
+                .build();
+
+        final long start = System.nanoTime();
+        final String hash = this.call(this.request("pack").put(formBody).build());
+        metrics.addRequest(channel.size(), System.nanoTime() - start);
+        return hash;
+    }
+
+    private String uploadChunked(final FileChannel channel, final String hash, final UploadMetrics metrics) throws IOException {
+        final int chunkSizeKib = this.mod.getConfig().getBucketConfig().getChunkSizeKib();
+        final long chunkSize = (long) (chunkSizeKib > 0 ? chunkSizeKib : DEFAULT_CHUNK_SIZE_KIB) * 1024;
+        final long size = channel.size();
+        final int chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+        final Set<Integer> receivedChunks = this.retry("list chunks", metrics, () -> this.getReceivedChunks(hash));
+
+        for (int index = 0; index < chunks; index++) {
+            if (receivedChunks.contains(index)) {
+                metrics.resumedChunks++;
+                continue;
+            }
+
+            final long offset = index * chunkSize;
+            final byte[] chunk = read(channel, offset, (int) Math.min(chunkSize, size - offset));
+            final Request request = this.request("pack/chunks?hash=" + hash + "&index=" + index + "&offset=" + offset)
+                    .header("X-Chunk-SHA1", HashUtil.sha1(chunk))
+                    .put(RequestBody.create(chunk, OCTET_STREAM))
+                    .build();
+
+            this.retry("upload chunk " + index, metrics, () -> {
+                final long start = System.nanoTime();
+                this.call(request);
+                metrics.addRequest(chunk.length, System.nanoTime() - start);
+                return null;
+            });
+        }
+
+        final Request request = this.request("pack/chunks/complete?hash=" + hash + "&chunks=" + chunks + "&size=" + size)
+                .post(RequestBody.create(new byte[0], null))
+                .build();
+
+        return this.retry("complete upload", metrics, () -> this.call(request));
+    }
+
+    private boolean exists(final String hash) throws IOException {
+        final Request request = new Request.Builder()
+                .url(String.format(this.mod.getDownloadPackApiUrl(), hash))
+                .addHeader("X-API-Key", this.mod.getConfig().getBucketConfig().getBucketApiKey())
+                .head()
+                .build();
+
+        try (final Response response = HTTP_CLIENT.newCall(request).execute()) {
+            // Buckets without support for HEAD answer 404, 405 or similar, which just means uploading it
+            if (response.code() < 500)
+                return response.isSuccessful();
+
+            checkResponse(response);
+            return true;
+        }
+    }
+
+    private Set<Integer> getReceivedChunks(final String hash) throws IOException {
+        try (final Response response = HTTP_CLIENT.newCall(this.request("pack/chunks?hash=" + hash).get().build()).execute()) {
+            if (response.code() == 404)
+                return Set.of();
+
+            checkResponse(response);
+            final List<Integer> chunks = GSON.fromJson(response.body().string(), new TypeToken<List<Integer>>() {
+            }.getType());
+            return chunks == null ? Set.of() : new HashSet<>(chunks);
+        } catch (final JsonParseException e) {
+            throw new IOException("Bucket responded with an invalid chunk list", e);
+        }
+    }
+
+    /**
+     * @return the trimmed response body
+     */
+    private String call(final Request request) throws IOException {
+        try (final Response response = HTTP_CLIENT.newCall(request).execute()) {
+            checkResponse(response);
+            final ResponseBody body = response.body();
+            return body == null ? "" : body.string().trim();
+        }
+    }
+
+    private Request.Builder request(final String path) {
+        return new Request.Builder()
+                .url(String.format(this.mod.getConfig().getBucketConfig().getBucketApiUrl(), path))
+                .addHeader("X-API-Key", this.mod.getConfig().getBucketConfig().getBucketApiKey());
+    }
+
+    private <T> T retry(final String action, final UploadMetrics metrics, final AsyncUtil.IOSupplier<T> supplier) throws IOException {
+        final int configuredRetries = this.mod.getConfig().getBucketConfig().getUploadRetries();
+        final int retries = configuredRetries > 0 ? configuredRetries : DEFAULT_RETRIES;
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return supplier.get();
+            } catch (final IOException e) {
+                if (e instanceof BucketResponseException responseException && !responseException.isRetryable() || attempt >= retries)
+                    throw e;
+
+                this.backoff(action, attempt, metrics, e);
+            }
+        }
+    }
+
+    private void backoff(final String action, final int attempt, final UploadMetrics metrics, final IOException cause) throws IOException {
+        // Doubles with every attempt, the jitter keeps several servers from retrying in lockstep
+        final long delay = Math.min(MAX_BACKOFF_MILLIS, 1000L << attempt) + ThreadLocalRandom.current().nextLong(500);
+        metrics.retries++;
+
+        AxolotlMod.LOGGER.warn("Unable to " + action + " (" + cause.getMessage() + "), retrying in " + delay + "ms");
+
+        try {
+            Thread.sleep(delay);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload was interrupted");
+        }
+    }
+
+    private static void checkResponse(final Response response) throws IOException {
+        if (response.isSuccessful())
+            return;
+
+        // Only server errors, timeouts and rate limits can go away by trying again
+        final int code = response.code();
+        throw new BucketResponseException("Bucket responded with " + code + " " + response.message(),
+                code >= 500 || code == 408 || code == 429);
+    }
+
+    private static byte[] read(final FileChannel channel, final long offset, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                throw new IOException("Pack ended unexpectedly at " + (offset + buffer.position()));
+        }
+
+        return buffer.array();
+    }
+
+    private static class BucketResponseException extends IOException {
+
+        @Getter private final boolean retryable;
+
+        private BucketResponseException(final String message, final boolean retryable) {
+            super(message);
+            this.retryable = retryable;
+        }
+    }
+
+    /**
+     * Streams a region of a file channel, so retries send the same bytes even if the file was replaced meanwhile.
+     */
+    @RequiredArgsConstructor
+    private static class ChannelRequestBody extends RequestBody {
+
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+        private final MediaType mediaType;
+
+        @Override
+        public MediaType contentType() {
+            return this.mediaType;
+        }
+
+        @Override
+        public long contentLength() {
+            return this.length;
+        }
+
+        @Override
+        public void writeTo(@NotNull final BufferedSink sink) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long position = this.offset;
+            final long end = this.offset + this.length;
+
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                final int read = this.channel.read(buffer, position);
+
+                if (read < 0)
+                    throw new IOException("Pack ended unexpectedly at " + position);
+
+                sink.write(buffer.flip());
+                position += read;
+            }
+        }
+    }
+
+    private static class UploadMetrics {
+
+        private final long start = System.nanoTime();
+        private int requests;
+        private int retries;
+        private int resumedChunks;
+        private long sentBytes;
+        private long totalLatencyNanos;
+        private long maxLatencyNanos;
+
+        private void addRequest(final long bytes, final long latencyNanos) {
+            this.requests++;
+            this.sentBytes += bytes;
+            this.totalLatencyNanos += latencyNanos;
+            this.maxLatencyNanos = Math.max(this.maxLatencyNanos, latencyNanos);
+        }
+
+        private void log(final long packSize) {
+            final double seconds = (System.nanoTime() - this.start) / 1e9;
+            final double mebibytes = this.sentBytes / (1024.0 * 1024.0);
+
+            AxolotlMod.LOGGER.info(String.format("Uploaded %.2f MiB of %.2f MiB in %.1fs (%.2f MiB/s), %d requests, %d resumed chunks, "
+                            + "%d retries, request latency avg %dms / max %dms", mebibytes, packSize / (1024.0 * 1024.0), seconds,
+                    seconds > 0 ? mebibytes / seconds : 0, this.requests, this.resumedChunks, this.retries,
+                    this.requests > 0 ? this.totalLatencyNanos / this.requests / 1_000_000 : 0, this.maxLatencyNanos / 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package dev.axolotlmc.axolotl.mixin;
+
+import dev.axolotlmc.axolotl.api.event.AllowPlayerActionCallback;
+import dev.axolotlmc.axolotl.api.event.ResourcePackStatusCallback;
+import net.minecraft.network.packet.c2s.play.ResourcePackStatusC2SPacket;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * @author Kenox
+ */
+@Mixin(ServerPlayNetworkHandler.class)
+public class ServerPlayNetworkHandlerMixin {
+
+    private static final String FORCE_MAIN_THREAD = "Lnet/minecraft/network/NetworkThreadUtils;forceMainThread(Lnet/minecraft/network/Packet;"
+            + "Lnet/minecraft/network/listener/PacketListener;Lnet/minecraft/server/world/ServerWorld;)V";
+
+    // The packet is handed to the server thread first, so this only runs once there
+    @Inject(method = "onResourcePackStatus", at = @At("TAIL"))
+    private void onResourcePackStatus(final ResourcePackStatusC2SPacket packet, final CallbackInfo callbackInfo) {
+        ResourcePackStatusCallback.EVENT.invoker().onStatus(((ServerPlayNetworkHandler) (Object) this).player, packet.getStatus());
+    }
+
+    // Listeners that deny a move put the client back themselves, so a held key does not cause a teleport per packet
+    @Inject(method = {"onPlayerMove", "onPlayerInteractBlock", "onPlayerInteractItem", "onPlayerInteractEntity", "onPlayerAction"},
+            at = @At(value = "INVOKE", target = FORCE_MAIN_THREAD, shift = At.Shift.AFTER), cancellable = true)
+    private void allowPlayerAction(final CallbackInfo callbackInfo) {
+        if (!AllowPlayerActionCallback.EVENT.invoker().allowAction(((ServerPlayNetworkHandler) (Object) this).player))
+            callbackInfo.cancel();
+    }
+}
@@ -0,0 +1,542 @@
+package dev.axolotlmc.axolotl.pack;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.util.HashUtil;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Shrinks pack files without changing what the client sees. PNGs lose their ancillary chunks and are recompressed,
+ * palette reduced or re-filtered, whichever is smallest. JSON and mcmeta files are minified.
+ * Results are cached by the hash of their source, so unchanged files are only optimized once.
+ *
+ * @author Kenox
+ */
+public class AssetOptimizer {
+
+    // Part of every cache key, bump it whenever the output of the optimizer changes
+    private static final String CACHE_VERSION = "1";
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final Gson COMPACT_GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private final File cacheDirectory;
+    private final Set<String> usedCacheFiles = ConcurrentHashMap.newKeySet();
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    public AssetOptimizer(final File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        this.cacheDirectory.mkdirs();
+    }
+
+    /**
+     * Reads the entry and returns its optimized content, or its original content if it can not be optimized.
+     */
+    public byte[] read(final PackEntry entry) throws IOException {
+        final byte[] data = entry.read();
+        final String extension = getExtension(entry.getName());
+
+        if (!extension.equals("png") && !extension.equals("json") && !extension.equals("mcmeta"))
+            return data;
+
+        final String cacheName = HashUtil.sha1(data) + "-" + CACHE_VERSION + "." + extension;
+        final File cacheFile = new File(this.cacheDirectory, cacheName);
+        this.usedCacheFiles.add(cacheName);
+
+        if (cacheFile.isFile())
+            return Files.readAllBytes(cacheFile.toPath());
+
+        final byte[] optimized = extension.equals("png") ? optimizePng(data) : minifyJson(data);
+        this.savedBytes.addAndGet(data.length - optimized.length);
+
+        // Written to a temporary file first, the same content may be optimized by two threads at once
+        final Path temporaryFile = Files.createTempFile(this.cacheDirectory.toPath(), cacheName, ".tmp");
+        Files.write(temporaryFile, optimized);
+        Files.move(temporaryFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return optimized;
+    }
+
+    /**
+     * @return bytes saved by files that were not cached yet
+     */
+    public long getSavedBytes() {
+        return this.savedBytes.get();
+    }
+
+    /**
+     * Deletes cached results that were not used since this optimizer was created.
+     */
+    public void cleanUp() {
+        final File[] files = this.cacheDirectory.listFiles();
+
+        if (files == null)
+            return;
+
+        for (final File file : files) {
+            if (!this.usedCacheFiles.contains(file.getName()))
+                file.delete();
+        }
+    }
+
+    static byte[] minifyJson(final byte[] data) {
+        try {
+            final JsonElement element = JsonParser.parseString(new String(data, StandardCharsets.UTF_8));
+            final byte[] minified = COMPACT_GSON.toJson(element).getBytes(StandardCharsets.UTF_8);
+            return minified.length < data.length ? minified : data;
+        } catch (final JsonParseException | StackOverflowError e) {
+            // The client reports broken files better than we could, ship them as they are
+            return data;
+        }
+    }
+
+    static byte[] optimizePng(final byte[] data) {
+        try {
+            final Png png = Png.read(data);
+
+            if (png == null)
+                return data;
+
+            byte[] best = data;
+
+            final byte[] recompressed = png.recompress();
+            if (recompressed.length < best.length)
+                best = recompressed;
+
+            final byte[] reencoded = png.reencode();
+            if (reencoded != null && reencoded.length < best.length)
+                best = reencoded;
+
+            return best;
+        } catch (final DataFormatException | RuntimeException e) {
+            AxolotlMod.LOGGER.debug("Unable to optimize png, keeping it as is", e);
+            return data;
+        }
+    }
+
+    private static String getExtension(final String name) {
+        final int separator = name.lastIndexOf('.');
+        return separator == -1 ? "" : name.substring(separator + 1).toLowerCase();
+    }
+
+    @RequiredArgsConstructor
+    private static class Chunk {
+
+        private final String type;
+        private final byte[] data;
+
+        private boolean isAncillary() {
+            return Character.isLowerCase(this.type.charAt(0));
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Png {
+
+        private static final int COLOR_TYPE_RGB = 2;
+        private static final int COLOR_TYPE_PALETTE = 3;
+        private static final int COLOR_TYPE_RGBA = 6;
+
+        private final List<Chunk> chunks;
+        private final int width;
+        private final int height;
+        private final int bitDepth;
+        private final int colorType;
+        private final int interlace;
+        private final byte[] imageData;
+
+        private static Png read(final byte[] data) throws DataFormatException {
+            if (data.length < PNG_SIGNATURE.length || !Arrays.equals(Arrays.copyOf(data, PNG_SIGNATURE.length), PNG_SIGNATURE))
+                return null;
+
+            final ByteBuffer buffer = ByteBuffer.wrap(data, PNG_SIGNATURE.length, data.length - PNG_SIGNATURE.length);
+            final List<Chunk> chunks = new ArrayList<>();
+            final ByteArrayOutputStream imageData = new ByteArrayOutputStream();
+
+            while (buffer.remaining() >= 12) {
+                final int length = buffer.getInt();
+                final byte[] type = new byte[4];
+                buffer.get(type);
+
+                if (length < 0 || length > buffer.remaining() - 4)
+                    return null;
+
+                final byte[] chunkData = new byte[length];
+                buffer.get(chunkData);
+                buffer.getInt();
+
+                final Chunk chunk = new Chunk(new String(type, StandardCharsets.US_ASCII), chunkData);
+                chunks.add(chunk);
+
+                if (chunk.type.equals("IDAT"))
+                    imageData.writeBytes(chunkData);
+
+                if (chunk.type.equals("IEND"))
+                    break;
+            }
+
+            if (chunks.isEmpty() || !chunks.get(0).type.equals("IHDR") || chunks.get(0).data.length != 13
+                    || !chunks.get(chunks.size() - 1).type.equals("IEND"))
+                return null;
+
+            final ByteBuffer header = ByteBuffer.wrap(chunks.get(0).data);
+            return new Png(chunks, header.getInt(), header.getInt(), header.get() & 0xFF, header.get() & 0xFF,
+                    header.get(12) & 0xFF, inflate(imageData.toByteArray()));
+        }
+
+        /**
+         * Keeps the filtered image data as is, but drops ancillary chunks and deflates it again at the highest level.
+         */
+        private byte[] recompress() {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            outputStream.writeBytes(PNG_SIGNATURE);
+            boolean imageDataWritten = false;
+
+            for (final Chunk chunk : this.chunks) {
+                // tRNS is ancillary, but dropping it would change the image
+                if (chunk.isAncillary() && !chunk.type.equals("tRNS"))
+                    continue;
+
+                if (chunk.type.equals("IDAT")) {
+                    if (!imageDataWritten)
+                        writeChunk(outputStream, "IDAT", deflate(this.imageData));
+
+                    imageDataWritten = true;
+                    continue;
+                }
+
+                writeChunk(outputStream, chunk.type, chunk.data);
+            }
+
+            return outputStream.toByteArray();
+        }
+
+        /**
+         * Decodes 8 bit RGB(A) images and encodes them again with a palette, without alpha or with better filters.
+         *
+         * @return {@code null} if the image uses a format this does not handle
+         */
+        private byte[] reencode() {
+            if (this.bitDepth != 8 || this.interlace != 0 || (this.colorType != COLOR_TYPE_RGB && this.colorType != COLOR_TYPE_RGBA))
+                return null;
+
+            // The transparent color of an RGB image is not carried over
+            for (final Chunk chunk : this.chunks) {
+                if (chunk.type.equals("tRNS"))
+                    return null;
+            }
+
+            final int[] pixels = this.decode();
+
+            if (pixels == null)
+                return null;
+
+            final Map<Integer, Integer> colors = new HashMap<>();
+            boolean opaque = true;
+
+            for (final int pixel : pixels) {
+                if (colors.size() <= 256)
+                    colors.putIfAbsent(pixel, 0);
+
+                if (pixel >>> 24 != 0xFF)
+                    opaque = false;
+            }
+
+            if (colors.size() <= 256)
+                return this.encodePalette(pixels, colors);
+
+            return this.encodeTrueColor(pixels, opaque);
+        }
+
+        private int[] decode() {
+            final int bytesPerPixel = this.colorType == COLOR_TYPE_RGBA ? 4 : 3;
+            final int rowLength = this.width * bytesPerPixel;
+
+            if ((long) (rowLength + 1) * this.height != this.imageData.length)
+                return null;
+
+            final int[] pixels = new int[this.width * this.height];
+            final byte[] previous = new byte[rowLength];
+            final byte[] row = new byte[rowLength];
+
+            for (int y = 0; y < this.height; y++) {
+                final int offset = y * (rowLength + 1);
+                final int filter = this.imageData[offset];
+                System.arraycopy(this.imageData, offset + 1, row, 0, rowLength);
+
+                if (!unfilter(filter, row, previous, bytesPerPixel))
+                    return null;
+
+                for (int x = 0; x < this.width; x++) {
+                    final int index = x * bytesPerPixel;
+                    final int alpha = bytesPerPixel == 4 ? row[index + 3] & 0xFF : 0xFF;
+                    pixels[y * this.width + x] = alpha << 24 | (row[index] & 0xFF) << 16 | (row[index + 1] & 0xFF) << 8 | row[index + 2] & 0xFF;
+                }
+
+                System.arraycopy(row, 0, previous, 0, rowLength);
+            }
+
+            return pixels;
+        }
+
+        private byte[] encodePalette(final int[] pixels, final Map<Integer, Integer> colors) {
+            // Translucent colors first, so tRNS only has to cover them
+            final List<Integer> palette = new ArrayList<>(colors.keySet());
+            palette.sort((first, second) -> {
+                final boolean firstOpaque = first >>> 24 == 0xFF;
+                final boolean secondOpaque = second >>> 24 == 0xFF;
+
+                if (firstOpaque != secondOpaque)
+                    return firstOpaque ? 1 : -1;
+
+                return Integer.compareUnsigned(first, second);
+            });
+
+            for (int index = 0; index < palette.size(); index++) {
+                colors.put(palette.get(index), index);
+            }
+
+            final int bitDepth = palette.size() <= 2 ? 1 : palette.size() <= 4 ? 2 : palette.size() <= 16 ? 4 : 8;
+            final int rowLength = (this.width * bitDepth + 7) / 8;
+            final ByteArrayOutputStream rawData = new ByteArrayOutputStream((rowLength + 1) * this.height);
+
+            for (int y = 0; y < this.height; y++) {
+                final byte[] row = new byte[rowLength];
+
+                for (int x = 0; x < this.width; x++) {
+                    final int index = colors.get(pixels[y * this.width + x]);
+                    final int bit = x * bitDepth;
+                    row[bit / 8] |= index << (8 - bitDepth - bit % 8);
+                }
+
+                // Filters rarely help indexed images
+                rawData.write(0);
+                rawData.writeBytes(row);
+            }
+
+            final byte[] paletteData = new byte[palette.size() * 3];
+            int translucentColors = 0;
+
+            for (int index = 0; index < palette.size(); index++) {
+                final int color = palette.get(index);
+                paletteData[index * 3] = (byte) (color >> 16);
+                paletteData[index * 3 + 1] = (byte) (color >> 8);
+                paletteData[index * 3 + 2] = (byte) color;
+
+                if (color >>> 24 != 0xFF)
+                    translucentColors = index + 1;
+            }
+
+            final byte[] transparency = new byte[translucentColors];
+
+            for (int index = 0; index < translucentColors; index++) {
+                transparency[index] = (byte) (palette.get(index) >>> 24);
+            }
+
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            outputStream.writeBytes(PNG_SIGNATURE);
+            writeChunk(outputStream, "IHDR", this.header(bitDepth, COLOR_TYPE_PALETTE));
+            writeChunk(outputStream, "PLTE", paletteData);
+
+            if (translucentColors > 0)
+                writeChunk(outputStream, "tRNS", transparency);
+
+            writeChunk(outputStream, "IDAT", deflate(rawData.toByteArray()));
+            writeChunk(outputStream, "IEND", new byte[0]);
+            return outputStream.toByteArray();
+        }
+
+        private byte[] encodeTrueColor(final int[] pixels, final boolean opaque) {
+            final int bytesPerPixel = opaque ? 3 : 4;
+            final int rowLength = this.width * bytesPerPixel;
+            final ByteArrayOutputStream rawData = new ByteArrayOutputStream((rowLength + 1) * this.height);
+            final byte[] previous = new byte[rowLength];
+            final byte[] row = new byte[rowLength];
+            final byte[][] candidates = new byte[5][rowLength];
+
+            for (int y = 0; y < this.height; y++) {
+                for (int x = 0; x < this.width; x++) {
+                    final int pixel = pixels[y * this.width + x];
+                    final int index = x * bytesPerPixel;
+                    row[index] = (byte) (pixel >> 16);
+                    row[index + 1] = (byte) (pixel >> 8);
+                    row[index + 2] = (byte) pixel;
+
+                    if (!opaque)
+                        row[index + 3] = (byte) (pixel >>> 24);
+                }
+
+                // Pick the filter with the smallest sum of absolute differences, the usual heuristic
+                int bestFilter = 0;
+                long bestScore = Long.MAX_VALUE;
+
+                for (int filter = 0; filter < candidates.length; filter++) {
+                    final long score = filter(filter, row, previous, bytesPerPixel, candidates[filter]);
+
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestFilter = filter;
+                    }
+                }
+
+                rawData.write(bestFilter);
+                rawData.writeBytes(candidates[bestFilter]);
+                System.arraycopy(row, 0, previous, 0, rowLength);
+            }
+
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            outputStream.writeBytes(PNG_SIGNATURE);
+            writeChunk(outputStream, "IHDR", this.header(8, opaque ? COLOR_TYPE_RGB : COLOR_TYPE_RGBA));
+            writeChunk(outputStream, "IDAT", deflate(rawData.toByteArray()));
+            writeChunk(outputStream, "IEND", new byte[0]);
+            return outputStream.toByteArray();
+        }
+
+        private byte[] header(final int bitDepth, final int colorType) {
+            return ByteBuffer.allocate(13)
+                    .putInt(this.width)
+                    .putInt(this.height)
+                    .put((byte) bitDepth)
+                    .put((byte) colorType)
+                    .put((byte) 0)
+                    .put((byte) 0)
+                    .put((byte) 0)
+                    .array();
+        }
+
+        private static boolean unfilter(final int filter, final byte[] row, final byte[] previous, final int bytesPerPixel) {
+            for (int index = 0; index < row.length; index++) {
+                final int left = index >= bytesPerPixel ? row[index - bytesPerPixel] & 0xFF : 0;
+                final int up = previous[index] & 0xFF;
+                final int upLeft = index >= bytesPerPixel ? previous[index - bytesPerPixel] & 0xFF : 0;
+
+                switch (filter) {
+                    case 0 -> {
+                    }
+                    case 1 -> row[index] += left;
+                    case 2 -> row[index] += up;
+                    case 3 -> row[index] += (left + up) >>> 1;
+                    case 4 -> row[index] += paeth(left, up, upLeft);
+                    default -> {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        private static long filter(final int filter, final byte[] row, final byte[] previous, final int bytesPerPixel, final byte[] output) {
+            long score = 0;
+
+            for (int index = 0; index < row.length; index++) {
+                final int value = row[index] & 0xFF;
+                final int left = index >= bytesPerPixel ? row[index - bytesPerPixel] & 0xFF : 0;
+                final int up = previous[index] & 0xFF;
+                final int upLeft = index >= bytesPerPixel ? previous[index - bytesPerPixel] & 0xFF : 0;
+
+                output[index] = (byte) switch (filter) {
+                    case 1 -> value - left;
+                    case 2 -> value - up;
+                    case 3 -> value - ((left + up) >>> 1);
+                    case 4 -> value - paeth(left, up, upLeft);
+                    default -> value;
+                };
+
+                score += Math.abs(output[index]);
+            }
+
+            return score;
+        }
+
+        private static int paeth(final int left, final int up, final int upLeft) {
+            final int estimate = left + up - upLeft;
+            final int leftDistance = Math.abs(estimate - left);
+            final int upDistance = Math.abs(estimate - up);
+            final int upLeftDistance = Math.abs(estimate - upLeft);
+
+            if (leftDistance <= upDistance && leftDistance <= upLeftDistance)
+                return left;
+
+            return upDistance <= upLeftDistance ? up : upLeft;
+        }
+
+        private static byte[] inflate(final byte[] data) throws DataFormatException {
+            final Inflater inflater = new Inflater();
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length * 4);
+            final byte[] buffer = new byte[16 * 1024];
+
+            try {
+                inflater.setInput(data);
+
+                while (!inflater.finished()) {
+                    final int length = inflater.inflate(buffer);
+
+                    if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        throw new DataFormatException("Truncated image data");
+
+                    outputStream.write(buffer, 0, length);
+                }
+            } finally {
+                inflater.end();
+            }
+
+            return outputStream.toByteArray();
+        }
+
+        private static byte[] deflate(final byte[] data) {
+            final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            final byte[] buffer = new byte[16 * 1024];
+
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+
+                while (!deflater.finished()) {
+                    final int length = deflater.deflate(buffer);
+                    outputStream.write(buffer, 0, length);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            return outputStream.toByteArray();
+        }
+
+        private static void writeChunk(final ByteArrayOutputStream outputStream, final String type, final byte[] data) {
+            final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+            final CRC32 crc = new CRC32();
+            crc.update(typeBytes);
+            crc.update(data);
+
+            outputStream.writeBytes(ByteBuffer.allocate(8).putInt(data.length).put(typeBytes).array());
+            outputStream.writeBytes(data);
+            outputStream.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+        }
+    }
+}
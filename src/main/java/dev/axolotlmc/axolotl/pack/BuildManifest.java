@@ -0,0 +1,171 @@
+package dev.axolotlmc.axolotl.pack;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import lombok.Data;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
+
+/**
+ * Content hashes of everything that went into and came out of the last pack build.
+ *
+ * @author Kenox
+ */
+@Data
+public class BuildManifest {
+
+    @SerializedName("pack_compression")
+    private int packCompression;
+
+    @SerializedName("deterministic")
+    private boolean deterministic;
+
+    @SerializedName("glyph_atlas")
+    private boolean glyphAtlas;
+
+    @SerializedName("optimize_assets")
+    private boolean optimizeAssets;
+
+    @SerializedName("prune_keep_prefixes")
+    private List<String> pruneKeepPrefixes;
+
+    @SerializedName("pack_hash")
+    private String packHash;
+
+    @SerializedName("uploaded_hash")
+    private String uploadedHash;
+
+    @SerializedName("build")
+    private int build;
+
+    @SerializedName("history")
+    private Map<String, FileHistory> history = new TreeMap<>();
+
+    @SerializedName("inputs")
+    private Map<String, InputRecord> inputs = new TreeMap<>();
+
+    @SerializedName("outputs")
+    private Map<String, OutputRecord> outputs = new TreeMap<>();
+
+    public static BuildManifest load(final File file) {
+        if (!file.exists())
+            return new BuildManifest();
+
+        try {
+            final BuildManifest manifest = GSON.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8), BuildManifest.class);
+
+            if (manifest != null && manifest.getInputs() != null && manifest.getOutputs() != null)
+                return manifest;
+        } catch (final IOException | JsonParseException e) {
+            AxolotlMod.LOGGER.warn("Unable to read build manifest, doing a full rebuild", e);
+        }
+
+        return new BuildManifest();
+    }
+
+    public synchronized void save(final File file) throws IOException {
+        FileUtils.writeStringToFile(file, GSON.toJson(this), StandardCharsets.UTF_8);
+    }
+
+    public boolean hasSameInputs(final BuildManifest other) {
+        if (this.inputs.size() != other.getInputs().size())
+            return false;
+
+        for (final Map.Entry<String, InputRecord> entry : this.inputs.entrySet()) {
+            final InputRecord otherRecord = other.getInputs().get(entry.getKey());
+
+            if (otherRecord == null || !otherRecord.getHash().equals(entry.getValue().getHash()))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Counts this build and records which pack entries changed since the previous build.
+     * Entries of the first recorded build are the baseline and do not count as changed.
+     */
+    public void recordHistory(final BuildManifest previousManifest) {
+        this.build = previousManifest.getBuild() + 1;
+        this.history = new TreeMap<>();
+
+        for (final Map.Entry<String, OutputRecord> entry : this.outputs.entrySet()) {
+            final OutputRecord previousRecord = previousManifest.getOutputs().get(entry.getKey());
+            final FileHistory previousHistory = previousManifest.getHistory() == null ? null : previousManifest.getHistory().get(entry.getKey());
+
+            if (previousRecord != null && previousHistory != null && previousRecord.getHash().equals(entry.getValue().getHash())) {
+                this.history.put(entry.getKey(), previousHistory);
+            } else if (previousManifest.getBuild() == 0) {
+                this.history.put(entry.getKey(), new FileHistory(0, this.build));
+            } else {
+                this.history.put(entry.getKey(), new FileHistory(previousHistory == null ? 1 : previousHistory.getChanges() + 1, this.build));
+            }
+        }
+    }
+
+    /**
+     * A source file; size and modification time are only used to avoid re-hashing untouched files.
+     */
+    @Data
+    public static class InputRecord {
+
+        @SerializedName("hash")
+        private final String hash;
+
+        @SerializedName("size")
+        private final long size;
+
+        @SerializedName("modified")
+        private final long modified;
+    }
+
+    /**
+     * A pack.zip entry together with the location of its compressed data, so it can be copied as is.
+     */
+    @Data
+    public static class OutputRecord {
+
+        @SerializedName("hash")
+        private final String hash;
+
+        @SerializedName("crc")
+        private final long crc;
+
+        @SerializedName("method")
+        private final int method;
+
+        @SerializedName("time")
+        private final long dosTime;
+
+        @SerializedName("size")
+        private final long size;
+
+        @SerializedName("compressed_size")
+        private final long compressedSize;
+
+        @SerializedName("offset")
+        private final long dataOffset;
+    }
+
+    /**
+     * How often a pack entry changed and in which build it changed last.
+     */
+    @Data
+    public static class FileHistory {
+
+        @SerializedName("changes")
+        private final int changes;
+
+        @SerializedName("last_changed")
+        private final int lastChanged;
+    }
+}
@@ -0,0 +1,116 @@
+package dev.axolotlmc.axolotl.pack;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.CustomItem;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the custom item of an {@link ItemStack} by its base item and custom model data, and creates stacks of custom items.
+ * Built once per loaded item set and never modified afterwards, so it can be read from any thread.
+ *
+ * @author Kenox
+ */
+public class CustomItemIndex {
+
+    private static final String CUSTOM_MODEL_DATA_KEY = "CustomModelData";
+
+    private final Map<Item, Int2ObjectOpenHashMap<CustomItem>> itemsByBase = new Reference2ObjectOpenHashMap<>();
+    private final Map<String, CustomItem> itemsByName = new Object2ObjectOpenHashMap<>();
+    private final Map<String, NbtCompound> templates = new Object2ObjectOpenHashMap<>();
+
+    public CustomItemIndex(final List<CustomItem> customItems) {
+        for (final CustomItem customItem : customItems) {
+            final Int2ObjectOpenHashMap<CustomItem> items = this.itemsByBase.computeIfAbsent(customItem.getItem(), item -> new Int2ObjectOpenHashMap<>());
+
+            // Same rule as the generated model overrides, the last item with the same custom model data wins
+            items.put(customItem.getCustomModelData(), customItem);
+
+            if (this.itemsByName.put(customItem.getName(), customItem) != null)
+                AxolotlMod.LOGGER.warn("Custom item " + customItem.getName() + " is defined more than once");
+
+            this.templates.put(customItem.getName(), createTemplate(customItem));
+        }
+
+        this.itemsByBase.values().forEach(Int2ObjectOpenHashMap::trim);
+    }
+
+    @Nullable
+    public CustomItem get(final ItemStack itemStack) {
+        if (itemStack.isEmpty() || !itemStack.hasNbt())
+            return null;
+
+        final Int2ObjectOpenHashMap<CustomItem> items = this.itemsByBase.get(itemStack.getItem());
+
+        if (items == null)
+            return null;
+
+        final NbtCompound nbt = itemStack.getNbt();
+
+        if (!nbt.contains(CUSTOM_MODEL_DATA_KEY, NbtElement.NUMBER_TYPE))
+            return null;
+
+        return items.get(nbt.getInt(CUSTOM_MODEL_DATA_KEY));
+    }
+
+    @Nullable
+    public CustomItem get(final Item item, final int customModelData) {
+        final Int2ObjectOpenHashMap<CustomItem> items = this.itemsByBase.get(item);
+        return items == null ? null : items.get(customModelData);
+    }
+
+    @Nullable
+    public CustomItem get(final String name) {
+        return this.itemsByName.get(name);
+    }
+
+    public boolean isCustomItem(final ItemStack itemStack) {
+        return this.get(itemStack) != null;
+    }
+
+    public ItemStack createStack(final CustomItem customItem, final int count) {
+        final NbtCompound template = this.templates.get(customItem.getName());
+
+        if (template == null)
+            throw new IllegalArgumentException("Custom item " + customItem.getName() + " is not part of the loaded pack");
+
+        final ItemStack itemStack = new ItemStack(customItem.getItem(), count);
+        itemStack.setNbt(template.copy());
+        return itemStack;
+    }
+
+    /**
+     * @return a new stack, or {@link ItemStack#EMPTY} if there is no custom item with that name
+     */
+    public ItemStack createStack(final String name, final int count) {
+        final CustomItem customItem = this.itemsByName.get(name);
+        return customItem == null ? ItemStack.EMPTY : this.createStack(customItem, count);
+    }
+
+    public int size() {
+        return this.itemsByName.size();
+    }
+
+    private static NbtCompound createTemplate(final CustomItem customItem) {
+        final NbtCompound nbt = new NbtCompound();
+        nbt.putInt(CUSTOM_MODEL_DATA_KEY, customItem.getCustomModelData());
+
+        if (customItem.getDisplayName() != null) {
+            final NbtCompound display = new NbtCompound();
+            display.putString("Name", Text.Serializer.toJson(Text.literal(customItem.getDisplayName())));
+            nbt.put("display", display);
+        }
+
+        return nbt;
+    }
+}
@@ -0,0 +1,128 @@
+package dev.axolotlmc.axolotl.pack;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.Glyph;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
+
+/**
+ * Assigns code points to glyphs and remembers them, so a glyph keeps its character when other glyphs are added or removed.
+ * Once the basic multilingual plane is used up, the supplementary private use areas are used.
+ *
+ * @author Kenox
+ */
+public class GlyphAllocator {
+
+    private static final int MIN_CODE = 42000;
+    private static final int BMP_END = 0xFFFD;
+    private static final int SUPPLEMENTARY_START = 0xF0000;
+    private static final int SUPPLEMENTARY_END = 0x10FFFD;
+
+    private final Map<String, Integer> codePoints;
+    private final BitSet usedCodePoints = new BitSet();
+    private int nextCodePoint = MIN_CODE;
+
+    private GlyphAllocator(final Map<String, Integer> codePoints) {
+        this.codePoints = codePoints;
+    }
+
+    public static GlyphAllocator load(final File file) {
+        if (!file.exists())
+            return new GlyphAllocator(new TreeMap<>());
+
+        try {
+            final Map<String, Integer> codePoints = GSON.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8),
+                    new TypeToken<TreeMap<String, Integer>>() {
+                    }.getType());
+
+            if (codePoints != null)
+                return new GlyphAllocator(codePoints);
+        } catch (final IOException | JsonParseException e) {
+            AxolotlMod.LOGGER.warn("Unable to read glyph code points, assigning new characters", e);
+        }
+
+        return new GlyphAllocator(new TreeMap<>());
+    }
+
+    public void save(final File file) throws IOException {
+        FileUtils.writeStringToFile(file, GSON.toJson(this.codePoints), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gives every glyph its remembered code point, or the first free one if it has none yet.
+     * Glyphs that no longer exist are forgotten.
+     */
+    public void allocate(final List<Glyph> glyphs) {
+        final Map<String, Integer> codePoints = new TreeMap<>();
+        this.usedCodePoints.clear();
+        this.nextCodePoint = MIN_CODE;
+
+        // Claim remembered code points first, so new glyphs can not take them
+        for (final Glyph glyph : glyphs) {
+            final Integer codePoint = this.codePoints.get(glyph.getName());
+
+            if (codePoint == null || codePoints.containsKey(glyph.getName()) || !isAssignable(codePoint) || this.usedCodePoints.get(codePoint))
+                continue;
+
+            this.usedCodePoints.set(codePoint);
+            codePoints.put(glyph.getName(), codePoint);
+        }
+
+        for (final Glyph glyph : glyphs) {
+            Integer codePoint = codePoints.get(glyph.getName());
+
+            if (codePoint == null) {
+                codePoint = this.nextFreeCodePoint();
+                this.usedCodePoints.set(codePoint);
+                codePoints.put(glyph.getName(), codePoint);
+            }
+
+            glyph.setCodePoint(codePoint);
+        }
+
+        this.codePoints.clear();
+        this.codePoints.putAll(codePoints);
+    }
+
+    public Map<String, Integer> getCodePoints() {
+        return this.codePoints;
+    }
+
+    private int nextFreeCodePoint() {
+        while (true) {
+            if (this.nextCodePoint > BMP_END && this.nextCodePoint < SUPPLEMENTARY_START)
+                this.nextCodePoint = SUPPLEMENTARY_START;
+
+            if (this.nextCodePoint > SUPPLEMENTARY_END)
+                throw new IllegalStateException("No code points left for glyphs");
+
+            final int codePoint = this.nextCodePoint++;
+
+            if (isAssignable(codePoint) && !this.usedCodePoints.get(codePoint))
+                return codePoint;
+        }
+    }
+
+    private static boolean isAssignable(final int codePoint) {
+        // Surrogates can not stand on their own and the last two code points of every plane are non-characters
+        if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)
+            return false;
+
+        if ((codePoint & 0xFFFE) == 0xFFFE)
+            return false;
+
+        return codePoint >= MIN_CODE && codePoint <= BMP_END
+                || codePoint >= SUPPLEMENTARY_START && codePoint <= SUPPLEMENTARY_END;
+    }
+}
@@ -0,0 +1,159 @@
+package dev.axolotlmc.axolotl.pack;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.Glyph;
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Packs glyph textures into shared sheets, one bitmap provider per sheet.
+ * <p>
+ * A bitmap provider splits its texture into equally sized cells and scales all of them with the same height and ascent,
+ * so only glyphs that agree on height, ascent and texture height share a sheet. Narrower textures are padded with
+ * transparent columns, which does not change their width as the client measures glyphs up to their last visible column.
+ *
+ * @author Kenox
+ */
+@Getter
+public class GlyphAtlas {
+
+    private static final int MAX_SHEET_SIZE = 4096;
+    private static final String SHEET_PATH = "font/atlas_";
+
+    private final JsonArray providers = new JsonArray();
+    private final Map<String, byte[]> sheets = new LinkedHashMap<>();
+    private final Set<String> packedGlyphs = new HashSet<>();
+    private final Set<String> packedTextures = new HashSet<>();
+
+    /**
+     * @param textureResolver finds the source file of a texture reference, {@code null} if it does not exist
+     */
+    public static GlyphAtlas pack(final List<Glyph> glyphs, final Function<String, File> textureResolver) throws IOException {
+        final GlyphAtlas atlas = new GlyphAtlas();
+        final Map<SheetKey, List<PackedGlyph>> groups = new LinkedHashMap<>();
+
+        for (final Glyph glyph : glyphs) {
+            final File textureFile = textureResolver.apply(glyph.getTexture());
+            final BufferedImage image = textureFile == null ? null : ImageIO.read(textureFile);
+
+            if (image == null) {
+                AxolotlMod.LOGGER.warn("Unable to read texture " + glyph.getTexture() + " of glyph " + glyph.getName() + ", keeping it out of the atlas");
+                continue;
+            }
+
+            groups.computeIfAbsent(new SheetKey(glyph.getHeight(), glyph.getAscent(), image.getHeight()), key -> new ArrayList<>())
+                    .add(new PackedGlyph(glyph, image));
+        }
+
+        for (final Map.Entry<SheetKey, List<PackedGlyph>> group : groups.entrySet()) {
+            final List<PackedGlyph> packedGlyphs = group.getValue();
+            final int cellWidth = packedGlyphs.stream().mapToInt(packedGlyph -> packedGlyph.image.getWidth()).max().orElse(1);
+            final int cellHeight = group.getKey().textureHeight;
+
+            // A sheet of one glyph would only rename its texture
+            if (packedGlyphs.size() < 2 || cellWidth > MAX_SHEET_SIZE || cellHeight > MAX_SHEET_SIZE)
+                continue;
+
+            final int columns = Math.min(MAX_SHEET_SIZE / cellWidth, (int) Math.ceil(Math.sqrt(packedGlyphs.size())));
+            final int maxRows = MAX_SHEET_SIZE / cellHeight;
+
+            for (int offset = 0; offset < packedGlyphs.size(); offset += columns * maxRows) {
+                final List<PackedGlyph> sheetGlyphs = packedGlyphs.subList(offset, Math.min(packedGlyphs.size(), offset + columns * maxRows));
+                atlas.addSheet(group.getKey(), sheetGlyphs, columns, cellWidth, cellHeight);
+            }
+        }
+
+        return atlas;
+    }
+
+    private void addSheet(final SheetKey key, final List<PackedGlyph> sheetGlyphs, final int columns, final int cellWidth,
+                          final int cellHeight) throws IOException {
+        final int rows = (sheetGlyphs.size() + columns - 1) / columns;
+        final BufferedImage sheet = new BufferedImage(columns * cellWidth, rows * cellHeight, BufferedImage.TYPE_INT_ARGB);
+        final JsonArray charsArray = new JsonArray();
+
+        for (int row = 0; row < rows; row++) {
+            final StringBuilder chars = new StringBuilder();
+
+            for (int column = 0; column < columns; column++) {
+                final int index = row * columns + column;
+
+                // Code point 0 marks an empty cell
+                if (index >= sheetGlyphs.size()) {
+                    chars.append('\u0000');
+                    continue;
+                }
+
+                final PackedGlyph packedGlyph = sheetGlyphs.get(index);
+                final BufferedImage image = packedGlyph.image;
+                sheet.setRGB(column * cellWidth, row * cellHeight, image.getWidth(), image.getHeight(),
+                        image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()), 0, image.getWidth());
+
+                chars.append(packedGlyph.glyph.getText());
+                this.packedGlyphs.add(packedGlyph.glyph.getName());
+                this.packedTextures.add(packedGlyph.glyph.getTexture());
+            }
+
+            charsArray.add(chars.toString());
+        }
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(sheet, "png", outputStream);
+
+        final String texture = SHEET_PATH + this.sheets.size() + ".png";
+        this.sheets.put("assets/axolotl/textures/" + texture, outputStream.toByteArray());
+
+        final JsonObject providerObject = new JsonObject();
+        providerObject.add("chars", charsArray);
+        providerObject.add("file", new JsonPrimitive("axolotl:" + texture));
+        providerObject.add("ascent", new JsonPrimitive(key.ascent));
+        providerObject.add("height", new JsonPrimitive(key.height));
+        providerObject.add("type", new JsonPrimitive("bitmap"));
+        this.providers.add(providerObject);
+    }
+
+    public boolean isPacked(final Glyph glyph) {
+        return this.packedGlyphs.contains(glyph.getName());
+    }
+
+    /**
+     * @return the entry name of a texture reference such as {@code minecraft:font/heart.png}
+     */
+    public static String getTextureEntry(final String texture) {
+        final int separator = texture.indexOf(':');
+        final String namespace = separator == -1 ? "minecraft" : texture.substring(0, separator);
+        return "assets/" + namespace + "/textures/" + texture.substring(separator + 1);
+    }
+
+    @Data
+    private static class SheetKey {
+
+        private final int height;
+        private final int ascent;
+        private final int textureHeight;
+    }
+
+    @RequiredArgsConstructor
+    private static class PackedGlyph {
+
+        private final Glyph glyph;
+        private final BufferedImage image;
+    }
+}
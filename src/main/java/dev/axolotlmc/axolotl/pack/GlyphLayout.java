@@ -0,0 +1,68 @@
+package dev.axolotlmc.axolotl.pack;
+
+import dev.axolotlmc.axolotl.api.Glyph;
+import lombok.RequiredArgsConstructor;
+import net.minecraft.text.Text;
+
+import java.util.Map;
+
+/**
+ * Lays out glyphs, plain text and pixel offsets into a single string.
+ * Consecutive offsets are merged, so they only cost one shift.
+ *
+ * @author Kenox
+ */
+@RequiredArgsConstructor
+public class GlyphLayout {
+
+    private final ShiftTable shiftTable;
+    private final Map<String, Glyph> glyphsByName;
+    private final StringBuilder stringBuilder = new StringBuilder();
+    private int pendingOffset;
+
+    /**
+     * @param offset pixels to move, negative values move to the left
+     */
+    public GlyphLayout offset(final int offset) {
+        this.pendingOffset += offset;
+        return this;
+    }
+
+    public GlyphLayout glyph(final String name) {
+        final Glyph glyph = this.glyphsByName.get(name);
+
+        if (glyph == null)
+            throw new IllegalArgumentException("Glyph " + name + " does not exist");
+
+        return this.glyph(glyph);
+    }
+
+    public GlyphLayout glyph(final Glyph glyph) {
+        this.flushOffset();
+        this.stringBuilder.append(glyph.getText());
+        return this;
+    }
+
+    public GlyphLayout text(final String text) {
+        this.flushOffset();
+        this.stringBuilder.append(text);
+        return this;
+    }
+
+    public String build() {
+        this.flushOffset();
+        return this.stringBuilder.toString();
+    }
+
+    public Text buildText() {
+        return Text.literal(this.build());
+    }
+
+    private void flushOffset() {
+        if (this.pendingOffset == 0)
+            return;
+
+        this.shiftTable.append(this.stringBuilder, this.pendingOffset);
+        this.pendingOffset = 0;
+    }
+}
@@ -0,0 +1,102 @@
+package dev.axolotlmc.axolotl.pack;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.CustomItem;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generates the base item models with their custom model data overrides and the models of custom items.
+ *
+ * @author Kenox
+ */
+public class ItemModelGenerator {
+
+    /**
+     * @return generated models by their path in the pack
+     */
+    public static Map<String, String> generate(final List<CustomItem> customItems) {
+        final Map<String, String> models = new LinkedHashMap<>();
+        final Map<Identifier, List<CustomItem>> itemsByBase = new TreeMap<>();
+
+        // Group custom items by their base item, looking every id up only once
+        for (final CustomItem customItem : customItems) {
+            itemsByBase.computeIfAbsent(Registry.ITEM.getId(customItem.getItem()), id -> new ArrayList<>()).add(customItem);
+        }
+
+        itemsByBase.forEach((baseId, items) -> {
+            // The client picks the last matching override, so they have to be in ascending order
+            items.sort(Comparator.comparingInt(CustomItem::getCustomModelData));
+
+            final JsonObject jsonObject = new JsonObject();
+            final JsonArray overridesArray = new JsonArray();
+
+            jsonObject.add("parent", new JsonPrimitive("item/generated"));
+            final JsonObject defaultItemTexturesObject = new JsonObject();
+            defaultItemTexturesObject.add("layer0", new JsonPrimitive(getNamespacePrefix(baseId) + "item/" + baseId.getPath()));
+            jsonObject.add("textures", defaultItemTexturesObject);
+
+            CustomItem previousItem = null;
+
+            for (final CustomItem customItem : items) {
+                if (previousItem != null && previousItem.getCustomModelData() == customItem.getCustomModelData())
+                    AxolotlMod.LOGGER.warn("Custom items " + previousItem.getName() + " and " + customItem.getName() + " both use custom model data "
+                            + customItem.getCustomModelData() + " on " + baseId.getNamespace() + ":" + baseId.getPath() + ", only "
+                            + customItem.getName() + " will be visible");
+
+                previousItem = customItem;
+
+                // Generate custom item model
+                final String model;
+
+                if (customItem.isGenerateModel()) {
+                    models.put("assets/minecraft/models/" + customItem.getName() + ".json", generateModel(customItem));
+                    model = customItem.getName();
+                } else {
+                    model = customItem.getModel();
+                }
+
+                final JsonObject overrideObject = new JsonObject();
+
+                final JsonObject predicateObject = new JsonObject();
+                predicateObject.add("custom_model_data", new JsonPrimitive(customItem.getCustomModelData()));
+
+                overrideObject.add("predicate", predicateObject);
+                overrideObject.add("model", new JsonPrimitive(model));
+
+                overridesArray.add(overrideObject);
+            }
+
+            jsonObject.add("overrides", overridesArray);
+
+            models.put("assets/" + baseId.getNamespace() + "/models/item/" + baseId.getPath() + ".json", jsonObject.toString());
+        });
+
+        return models;
+    }
+
+    private static String generateModel(final CustomItem customItem) {
+        final JsonObject customItemObject = new JsonObject();
+        customItemObject.add("parent", new JsonPrimitive(customItem.getParentModel()));
+
+        final JsonObject customItemTexturesObject = new JsonObject();
+        customItemTexturesObject.add("layer0", new JsonPrimitive(customItem.getTextures().get(0)));
+
+        customItemObject.add("textures", customItemTexturesObject);
+        return customItemObject.toString();
+    }
+
+    private static String getNamespacePrefix(final Identifier identifier) {
+        return identifier.getNamespace().equals("minecraft") ? "" : identifier.getNamespace() + ":";
+    }
+}
@@ -0,0 +1,363 @@
+package dev.axolotlmc.axolotl.pack;
+
+import dev.axolotlmc.axolotl.util.AsyncUtil;
+import dev.axolotlmc.axolotl.util.HashUtil;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes pack.zip by hand, so entries that did not change since the last build can be copied over
+ * from the previous archive without being compressed again, and changed entries can be deflated in parallel.
+ *
+ * @author Kenox
+ */
+public class PackArchiveWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_LENGTH = 22;
+    private static final int VERSION = 20;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int DIRECTORY_ATTRIBUTE = 0x10;
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    private static final long DOS_EPOCH = (1 << 21) | (1 << 16);
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    private final FileChannel channel;
+    private final int compressionLevel;
+    private final boolean deterministic;
+    @Nullable private final FileChannel previousChannel;
+    private final Map<String, BuildManifest.OutputRecord> previousOutputs;
+    private final List<CentralEntry> centralEntries = new ArrayList<>();
+
+    @Getter private final Map<String, BuildManifest.OutputRecord> outputs = new TreeMap<>();
+    @Getter private int reusedEntries;
+    private final MessageDigest digest = HashUtil.sha1();
+    private String hash;
+
+    /**
+     * @param deterministic    whether every entry gets the same timestamp, so identical content always results in an identical archive
+     * @param previousManifest manifest of {@code previousArchive}, only pass it when the archive is known to be intact
+     */
+    public PackArchiveWriter(final File file, final int compressionLevel, final boolean deterministic,
+                             @Nullable final BuildManifest previousManifest, @Nullable final File previousArchive) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.deterministic = deterministic;
+        // Pin the level, the default of -1 is left to whatever zlib considers its default
+        this.compressionLevel = deterministic && (compressionLevel < 0 || compressionLevel > 9)
+                ? DEFAULT_COMPRESSION_LEVEL : compressionLevel;
+
+        if (previousManifest != null && previousArchive != null && previousArchive.exists()) {
+            this.previousChannel = FileChannel.open(previousArchive.toPath(), StandardOpenOption.READ);
+            this.previousOutputs = previousManifest.getOutputs();
+        } else {
+            this.previousChannel = null;
+            this.previousOutputs = Map.of();
+        }
+    }
+
+    public void addDirectory(final String name, final long lastModified) throws IOException {
+        final String directoryName = name.endsWith("/") ? name : name + "/";
+        this.writeEntry(directoryName, ZipEntry.STORED, this.toDosTime(lastModified), 0, 0, 0, null, DIRECTORY_ATTRIBUTE);
+    }
+
+    public void addFile(final String name, final byte[] data, final long lastModified) throws IOException {
+        this.write(this.prepare(name, data, lastModified));
+    }
+
+    /**
+     * Reads and compresses the entries on {@code executor} while writing them in their given order.
+     * Only a bounded number of compressed entries is held in memory at once.
+     */
+    public void addAll(final List<PackEntry> entries, final Executor executor, final int parallelism) throws IOException {
+        this.addAll(entries, PackEntry::read, executor, parallelism);
+    }
+
+    /**
+     * @param reader provides the content of a file entry, called on {@code executor}
+     */
+    public void addAll(final List<PackEntry> entries, final AsyncUtil.IOFunction<PackEntry, byte[]> reader, final Executor executor,
+                       final int parallelism) throws IOException {
+        final Deque<CompletableFuture<PreparedEntry>> pending = new ArrayDeque<>();
+        final int window = Math.max(1, parallelism * 4);
+
+        for (final PackEntry entry : entries) {
+            if (entry.isDirectory()) {
+                pending.add(CompletableFuture.completedFuture(new PreparedEntry(entry.getName(), null,
+                        new BuildManifest.OutputRecord(null, 0, ZipEntry.STORED, this.toDosTime(entry.getLastModified()), 0, 0, -1), null)));
+            } else {
+                pending.add(AsyncUtil.supplyAsync(() -> this.prepare(entry.getName(), reader.apply(entry), entry.getLastModified()), executor));
+            }
+
+            if (pending.size() >= window)
+                this.write(AsyncUtil.join(pending.poll()));
+        }
+
+        while (!pending.isEmpty()) {
+            this.write(AsyncUtil.join(pending.poll()));
+        }
+    }
+
+    /**
+     * Copies an entry of the previous archive as it is, without reading or compressing its content.
+     */
+    public void addCopy(final String name) throws IOException {
+        final BuildManifest.OutputRecord record = this.previousOutputs.get(name);
+
+        if (this.previousChannel == null || record == null)
+            throw new IOException("Previous pack has no entry " + name);
+
+        this.write(new PreparedEntry(name, record.getHash(), record, null));
+    }
+
+    private PreparedEntry prepare(final String name, final byte[] data, final long lastModified) {
+        final String hash = HashUtil.sha1(data);
+        final BuildManifest.OutputRecord previousRecord = this.previousOutputs.get(name);
+
+        // Copy the already compressed data when the content did not change
+        if (this.previousChannel != null && previousRecord != null && previousRecord.getHash().equals(hash))
+            return new PreparedEntry(name, hash, new BuildManifest.OutputRecord(hash, previousRecord.getCrc(),
+                    previousRecord.getMethod(), this.toDosTime(lastModified), previousRecord.getSize(),
+                    previousRecord.getCompressedSize(), previousRecord.getDataOffset()), null);
+
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+
+        final byte[] compressed = this.deflate(data);
+        final BuildManifest.OutputRecord record = new BuildManifest.OutputRecord(hash, crc.getValue(), ZipEntry.DEFLATED,
+                this.toDosTime(lastModified), data.length, compressed.length, -1);
+
+        return new PreparedEntry(name, hash, record, compressed);
+    }
+
+    private void write(final PreparedEntry preparedEntry) throws IOException {
+        final BuildManifest.OutputRecord record = preparedEntry.record;
+        final String name = preparedEntry.name;
+
+        // Directories have no content that could be compressed or reused
+        if (preparedEntry.hash == null) {
+            this.writeEntry(name, ZipEntry.STORED, record.getDosTime(), 0, 0, 0, null, DIRECTORY_ATTRIBUTE);
+            return;
+        }
+        final long headerOffset = this.channel.position();
+        final long dataOffset = this.writeLocalHeader(name, record.getMethod(), record.getDosTime(), record.getCrc(),
+                record.getCompressedSize(), record.getSize());
+
+        if (preparedEntry.compressed != null) {
+            this.write(ByteBuffer.wrap(preparedEntry.compressed));
+        } else {
+            if (record.getDataOffset() + record.getCompressedSize() > this.previousChannel.size())
+                throw new IOException("Previous pack ended unexpectedly while copying " + name);
+
+            // Mapped instead of transferred, so the copied bytes can be digested on their way through
+            this.write(this.previousChannel.map(FileChannel.MapMode.READ_ONLY, record.getDataOffset(), record.getCompressedSize()));
+
+            this.reusedEntries++;
+        }
+
+        this.centralEntries.add(new CentralEntry(name, record.getMethod(), record.getDosTime(), record.getCrc(),
+                record.getCompressedSize(), record.getSize(), headerOffset, 0));
+        this.outputs.put(name, new BuildManifest.OutputRecord(preparedEntry.hash, record.getCrc(), record.getMethod(),
+                record.getDosTime(), record.getSize(), record.getCompressedSize(), dataOffset));
+    }
+
+    /**
+     * @return SHA-1 of the archive, digested while it was written
+     */
+    public String getHash() {
+        if (this.hash == null)
+            throw new IllegalStateException("Archive has not been closed yet");
+
+        return this.hash;
+    }
+
+    public int getEntryCount() {
+        return this.centralEntries.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            final long centralOffset = this.channel.position();
+
+            for (final CentralEntry entry : this.centralEntries) {
+                final byte[] nameBytes = entry.name.getBytes(StandardCharsets.UTF_8);
+                final ByteBuffer buffer = ByteBuffer.allocate(CENTRAL_HEADER_LENGTH + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(CENTRAL_HEADER_SIGNATURE);
+                buffer.putShort((short) VERSION);
+                buffer.putShort((short) VERSION);
+                buffer.putShort((short) UTF8_FLAG);
+                buffer.putShort((short) entry.method);
+                buffer.putInt((int) entry.dosTime);
+                buffer.putInt((int) entry.crc);
+                buffer.putInt((int) entry.compressedSize);
+                buffer.putInt((int) entry.size);
+                buffer.putShort((short) nameBytes.length);
+                buffer.putShort((short) 0);
+                buffer.putShort((short) 0);
+                buffer.putShort((short) 0);
+                buffer.putShort((short) 0);
+                buffer.putInt(entry.externalAttributes);
+                buffer.putInt((int) entry.headerOffset);
+                buffer.put(nameBytes);
+                this.write(buffer.flip());
+            }
+
+            final long centralSize = this.channel.position() - centralOffset;
+
+            if (this.centralEntries.size() > 0xFFFF || centralOffset + centralSize > ZIP32_LIMIT)
+                throw new IOException("Pack exceeds the zip format limits (65535 entries / 4 GiB)");
+
+            final ByteBuffer buffer = ByteBuffer.allocate(END_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(END_SIGNATURE);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) this.centralEntries.size());
+            buffer.putShort((short) this.centralEntries.size());
+            buffer.putInt((int) centralSize);
+            buffer.putInt((int) centralOffset);
+            buffer.putShort((short) 0);
+            this.write(buffer.flip());
+
+            this.hash = HashUtil.toHex(this.digest.digest());
+        } finally {
+            this.channel.close();
+
+            if (this.previousChannel != null)
+                this.previousChannel.close();
+        }
+    }
+
+    private long writeEntry(final String name, final int method, final long dosTime, final long crc, final long compressedSize,
+                            final long size, @Nullable final byte[] data, final int externalAttributes) throws IOException {
+        final long headerOffset = this.channel.position();
+        final long dataOffset = this.writeLocalHeader(name, method, dosTime, crc, compressedSize, size);
+
+        if (data != null)
+            this.write(ByteBuffer.wrap(data));
+
+        this.centralEntries.add(new CentralEntry(name, method, dosTime, crc, compressedSize, size, headerOffset, externalAttributes));
+        return dataOffset;
+    }
+
+    private long writeLocalHeader(final String name, final int method, final long dosTime, final long crc,
+                                  final long compressedSize, final long size) throws IOException {
+        final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+
+        if (this.channel.position() > ZIP32_LIMIT || size > ZIP32_LIMIT || compressedSize > ZIP32_LIMIT)
+            throw new IOException("Pack exceeds the zip format limits (4 GiB) at " + name);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(LOCAL_HEADER_LENGTH + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(LOCAL_HEADER_SIGNATURE);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) UTF8_FLAG);
+        buffer.putShort((short) method);
+        buffer.putInt((int) dosTime);
+        buffer.putInt((int) crc);
+        buffer.putInt((int) compressedSize);
+        buffer.putInt((int) size);
+        buffer.putShort((short) nameBytes.length);
+        buffer.putShort((short) 0);
+        buffer.put(nameBytes);
+        this.write(buffer.flip());
+
+        return this.channel.position();
+    }
+
+    private byte[] deflate(final byte[] data) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        final Deflater deflater = new Deflater(this.compressionLevel, true);
+        final byte[] buffer = new byte[16 * 1024];
+
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                final int length = deflater.deflate(buffer);
+                outputStream.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private void write(final ByteBuffer buffer) throws IOException {
+        this.digest.update(buffer.duplicate());
+
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+
+    private long toDosTime(final long millis) {
+        if (this.deterministic)
+            return DOS_EPOCH;
+
+        final LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+
+        if (time.getYear() < 1980)
+            return DOS_EPOCH;
+
+        return (long) (time.getYear() - 1980) << 25
+                | (long) time.getMonthValue() << 21
+                | (long) time.getDayOfMonth() << 16
+                | (long) time.getHour() << 11
+                | (long) time.getMinute() << 5
+                | (long) time.getSecond() >> 1;
+    }
+
+    @RequiredArgsConstructor
+    private static class PreparedEntry {
+
+        private final String name;
+        @Nullable private final String hash;
+        private final BuildManifest.OutputRecord record;
+        @Nullable private final byte[] compressed;
+    }
+
+    @RequiredArgsConstructor
+    private static class CentralEntry {
+
+        private final String name;
+        private final int method;
+        private final long dosTime;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long headerOffset;
+        private final int externalAttributes;
+    }
+}
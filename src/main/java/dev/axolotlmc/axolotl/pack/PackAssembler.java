@@ -0,0 +1,145 @@
+package dev.axolotlmc.axolotl.pack;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collects the final layout of the pack in memory, so it can be streamed into a {@link PackArchiveWriter}
+ * without writing an intermediate directory.
+ *
+ * @author Kenox
+ */
+public class PackAssembler {
+
+    private final Map<String, PackEntry> entries = new LinkedHashMap<>();
+    private final Map<String, Set<String>> children = new LinkedHashMap<>();
+    @Getter private final long buildTime;
+    private final boolean sorted;
+
+    /**
+     * @param sorted whether entries are ordered by name instead of the order they were added in
+     */
+    public PackAssembler(final long buildTime, final boolean sorted) {
+        this.buildTime = buildTime;
+        this.sorted = sorted;
+        this.children.put("", new LinkedHashSet<>());
+    }
+
+    public void addDirectory(final String name, final long lastModified) {
+        final String directoryName = name.endsWith("/") ? name : name + "/";
+
+        if (this.entries.containsKey(directoryName))
+            return;
+
+        this.link(directoryName);
+        this.entries.put(directoryName, PackEntry.directory(directoryName, lastModified));
+        this.children.putIfAbsent(directoryName, new LinkedHashSet<>());
+    }
+
+    public void addFile(final String name, final File source) {
+        this.add(PackEntry.file(name, source));
+    }
+
+    public void addGenerated(final String name, final String content) {
+        this.addGenerated(name, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void addGenerated(final String name, final byte[] data) {
+        this.add(PackEntry.generated(name, data, this.buildTime));
+    }
+
+    /**
+     * Removes a file entry, its directory is kept even if it ends up empty.
+     */
+    public void remove(final String name) {
+        if (this.entries.remove(name) == null)
+            return;
+
+        final int separator = name.lastIndexOf('/');
+        this.children.get(separator == -1 ? "" : name.substring(0, separator + 1)).remove(name);
+    }
+
+    /**
+     * Adds every file and directory below {@code directory}, {@code pathMapper} maps the relative path to the entry name.
+     */
+    public void addSourceTree(final File directory, final UnaryOperator<String> pathMapper) {
+        this.addSourceTree(directory, "", pathMapper);
+    }
+
+    public Collection<PackEntry> getEntries() {
+        return this.entries.values();
+    }
+
+    /**
+     * @return all entries in archive order, every directory is directly followed by its contents
+     */
+    public List<PackEntry> getOrderedEntries() {
+        final List<PackEntry> orderedEntries = new ArrayList<>(this.entries.size());
+        this.collect("", orderedEntries);
+        return orderedEntries;
+    }
+
+    private void addSourceTree(final File directory, final String path, final UnaryOperator<String> pathMapper) {
+        final File[] files = directory.listFiles();
+
+        if (files == null)
+            return;
+
+        // Directory listings have no defined order, which decides which file wins when two map to the same name
+        if (this.sorted)
+            Arrays.sort(files, Comparator.comparing(File::getName));
+
+        for (final File file : files) {
+            final String relativePath = path + file.getName();
+
+            if (file.isDirectory()) {
+                this.addDirectory(pathMapper.apply(relativePath + "/"), file.lastModified());
+                this.addSourceTree(file, relativePath + "/", pathMapper);
+            } else {
+                this.addFile(pathMapper.apply(relativePath), file);
+            }
+        }
+    }
+
+    private void add(final PackEntry entry) {
+        // Later entries replace earlier ones but keep their position, just like overwriting a file would
+        this.link(entry.getName());
+        this.entries.put(entry.getName(), entry);
+    }
+
+    private void link(final String name) {
+        final String trimmed = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+        final int separator = trimmed.lastIndexOf('/');
+        final String parent = separator == -1 ? "" : trimmed.substring(0, separator + 1);
+
+        if (!parent.isEmpty())
+            this.addDirectory(parent, this.buildTime);
+
+        this.children.get(parent).add(name);
+    }
+
+    private void collect(final String directory, final List<PackEntry> orderedEntries) {
+        final Collection<String> names = this.sorted ? new TreeSet<>(this.children.get(directory)) : this.children.get(directory);
+
+        for (final String name : names) {
+            final PackEntry entry = this.entries.get(name);
+            orderedEntries.add(entry);
+
+            if (entry.isDirectory())
+                this.collect(name, orderedEntries);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package dev.axolotlmc.axolotl.pack;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A single pack.zip entry, either backed by a source file or generated in memory.
+ *
+ * @author Kenox
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class PackEntry {
+
+    private final String name;
+    private final boolean directory;
+    @Nullable private final File source;
+    @Nullable private final byte[] data;
+    private final long lastModified;
+
+    public static PackEntry directory(final String name, final long lastModified) {
+        return new PackEntry(name, true, null, null, lastModified);
+    }
+
+    public static PackEntry file(final String name, final File source) {
+        return new PackEntry(name, false, source, null, source.lastModified());
+    }
+
+    public static PackEntry generated(final String name, final byte[] data, final long lastModified) {
+        return new PackEntry(name, false, null, data, lastModified);
+    }
+
+    public long getSize() {
+        if (this.data != null)
+            return this.data.length;
+
+        return this.source == null ? 0 : this.source.length();
+    }
+
+    public byte[] read() throws IOException {
+        if (this.data != null)
+            return this.data;
+
+        if (this.source == null)
+            return new byte[0];
+
+        return Files.readAllBytes(this.source.toPath());
+    }
+}
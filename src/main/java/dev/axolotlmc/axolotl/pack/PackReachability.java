@@ -0,0 +1,322 @@
+package dev.axolotlmc.axolotl.pack;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import dev.axolotlmc.axolotl.AxolotlMod;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Follows references from item models, blockstates, fonts, particles and sounds.json through model parents and overrides
+ * to the textures and sounds they use, to find models, textures and sounds nothing refers to.
+ * <p>
+ * Only files below {@code models/}, {@code textures/} and {@code sounds/} can be unreferenced, everything else is a root.
+ * Files below a kept prefix are roots as well, as they may be used by the game itself or by files this does not understand.
+ * Missing files in the {@code minecraft} namespace are assumed to be vanilla, missing files anywhere else are reported.
+ *
+ * @author Kenox
+ */
+public class PackReachability {
+
+    /**
+     * Folders the game loads textures from by path rather than through a model or font, and block models the vanilla
+     * blockstates refer to. Overrides of vanilla item, block and sound files are only kept while a file of the pack refers to them.
+     */
+    public static final List<String> DEFAULT_KEEP_PREFIXES = List.of("assets/minecraft/textures/gui/", "assets/minecraft/textures/environment/",
+            "assets/minecraft/textures/misc/", "assets/minecraft/textures/colormap/", "assets/minecraft/textures/entity/",
+            "assets/minecraft/textures/painting/", "assets/minecraft/textures/mob_effect/", "assets/minecraft/textures/map/",
+            "assets/minecraft/textures/models/armor/", "assets/minecraft/textures/effect/", "assets/minecraft/models/block/");
+
+    private final Map<String, PackEntry> entries = new HashMap<>();
+    private final List<String> keepPrefixes;
+    private final Set<String> reachable = new HashSet<>();
+    private final Deque<String> pending = new ArrayDeque<>();
+
+    /**
+     * Unreferenced files by name, including files that are kept because of their prefix.
+     */
+    @Getter private final Map<String, Long> unreferenced = new TreeMap<>();
+
+    /**
+     * Missing files by name, together with the files referring to them.
+     */
+    @Getter private final Map<String, Set<String>> brokenReferences = new TreeMap<>();
+
+    private PackReachability(final Collection<PackEntry> entries, final List<String> keepPrefixes) {
+        for (final PackEntry entry : entries) {
+            if (!entry.isDirectory())
+                this.entries.put(entry.getName(), entry);
+        }
+
+        this.keepPrefixes = keepPrefixes;
+    }
+
+    public static PackReachability analyze(final Collection<PackEntry> entries, final List<String> keepPrefixes) throws IOException {
+        final PackReachability reachability = new PackReachability(entries, keepPrefixes);
+        reachability.analyze();
+        return reachability;
+    }
+
+    public boolean isKept(final String name) {
+        return this.keepPrefixes.stream().anyMatch(name::startsWith);
+    }
+
+    public long getUnreferencedBytes() {
+        return this.unreferenced.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return the report as plain text, one file per line
+     */
+    public String createReport() {
+        final StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("Unreferenced files (").append(this.unreferenced.size()).append(", ")
+                .append(this.getUnreferencedBytes() / 1024).append(" KiB)\n");
+
+        this.unreferenced.forEach((name, size) -> stringBuilder.append(String.format("%12d  %s%s%n", size, name,
+                this.isKept(name) ? "  (kept)" : "")));
+
+        stringBuilder.append("\nBroken references (").append(this.brokenReferences.size()).append(")\n");
+
+        this.brokenReferences.forEach((name, referrers) -> stringBuilder.append("  ").append(name)
+                .append("  <-  ").append(String.join(", ", referrers)).append('\n'));
+
+        return stringBuilder.toString();
+    }
+
+    private void analyze() throws IOException {
+        for (final String name : this.entries.keySet()) {
+            if (!isCandidate(name) || this.isKept(name) || name.matches("assets/[^/]+/models/item/.*"))
+                this.markReachable(name);
+        }
+
+        while (!this.pending.isEmpty()) {
+            final String name = this.pending.poll();
+
+            if (name.endsWith(".json"))
+                this.followReferences(name);
+        }
+
+        for (final Map.Entry<String, PackEntry> entry : this.entries.entrySet()) {
+            if (!this.reachable.contains(entry.getKey()))
+                this.unreferenced.put(entry.getKey(), entry.getValue().getSize());
+        }
+    }
+
+    private void followReferences(final String name) throws IOException {
+        final String[] path = name.split("/", 4);
+
+        if (path.length < 3 || !path[0].equals("assets"))
+            return;
+
+        final JsonElement json;
+
+        try {
+            json = JsonParser.parseString(new String(this.entries.get(name).read(), StandardCharsets.UTF_8));
+        } catch (final JsonParseException e) {
+            AxolotlMod.LOGGER.warn("Unable to follow references of " + name + ", it is not valid json");
+            return;
+        }
+
+        if (!json.isJsonObject())
+            return;
+
+        final JsonObject object = json.getAsJsonObject();
+
+        if (path[2].equals("sounds.json")) {
+            this.followSounds(name, object);
+            return;
+        }
+
+        if (path.length < 4)
+            return;
+
+        switch (path[2]) {
+            case "models" -> this.followModel(name, object);
+            case "blockstates" -> this.followBlockState(name, object);
+            case "font" -> this.followFont(name, object);
+            case "particles" -> this.forEachString(object.get("textures"), texture ->
+                    this.reference(name, toPath(texture, "textures/particle/", ".png", "minecraft")));
+            default -> {
+            }
+        }
+    }
+
+    private void followModel(final String name, final JsonObject model) {
+        this.referenceModel(name, model.get("parent"));
+
+        if (model.has("textures") && model.get("textures").isJsonObject()) {
+            for (final Map.Entry<String, JsonElement> texture : model.getAsJsonObject("textures").entrySet()) {
+                final String value = getString(texture.getValue());
+
+                // "#name" refers to another texture variable of the model
+                if (value != null && !value.startsWith("#"))
+                    this.reference(name, toPath(value, "textures/", ".png", "minecraft"));
+            }
+        }
+
+        if (model.has("overrides") && model.get("overrides").isJsonArray()) {
+            for (final JsonElement override : model.getAsJsonArray("overrides")) {
+                if (override.isJsonObject())
+                    this.referenceModel(name, override.getAsJsonObject().get("model"));
+            }
+        }
+    }
+
+    private void followBlockState(final String name, final JsonObject blockState) {
+        if (blockState.has("variants") && blockState.get("variants").isJsonObject()) {
+            for (final Map.Entry<String, JsonElement> variant : blockState.getAsJsonObject("variants").entrySet()) {
+                this.referenceVariants(name, variant.getValue());
+            }
+        }
+
+        if (blockState.has("multipart") && blockState.get("multipart").isJsonArray()) {
+            for (final JsonElement part : blockState.getAsJsonArray("multipart")) {
+                if (part.isJsonObject())
+                    this.referenceVariants(name, part.getAsJsonObject().get("apply"));
+            }
+        }
+    }
+
+    private void referenceVariants(final String name, final JsonElement variants) {
+        if (variants == null)
+            return;
+
+        if (variants.isJsonArray()) {
+            variants.getAsJsonArray().forEach(variant -> this.referenceVariants(name, variant));
+        } else if (variants.isJsonObject()) {
+            this.referenceModel(name, variants.getAsJsonObject().get("model"));
+        }
+    }
+
+    private void followFont(final String name, final JsonObject font) {
+        if (!font.has("providers") || !font.get("providers").isJsonArray())
+            return;
+
+        for (final JsonElement element : font.getAsJsonArray("providers")) {
+            if (!element.isJsonObject())
+                continue;
+
+            final JsonObject provider = element.getAsJsonObject();
+            final String type = getString(provider.get("type"));
+
+            if ("bitmap".equals(type)) {
+                this.referenceString(name, provider.get("file"), "textures/", "");
+            } else if ("ttf".equals(type)) {
+                this.referenceString(name, provider.get("file"), "font/", "");
+            } else if ("reference".equals(type)) {
+                this.referenceString(name, provider.get("id"), "font/", ".json");
+            } else if ("legacy_unicode".equals(type)) {
+                this.referenceString(name, provider.get("sizes"), "", "");
+                final String template = getString(provider.get("template"));
+
+                // Every page matching the template is used
+                if (template != null && template.contains("%s")) {
+                    final String prefix = toPath(template.substring(0, template.indexOf("%s")), "textures/", "", "minecraft");
+                    this.entries.keySet().stream().filter(entry -> entry.startsWith(prefix)).toList().forEach(this::markReachable);
+                }
+            }
+        }
+    }
+
+    private void followSounds(final String name, final JsonObject sounds) {
+        for (final Map.Entry<String, JsonElement> event : sounds.entrySet()) {
+            if (!event.getValue().isJsonObject())
+                continue;
+
+            final JsonElement soundList = event.getValue().getAsJsonObject().get("sounds");
+
+            if (soundList == null || !soundList.isJsonArray())
+                continue;
+
+            for (final JsonElement sound : soundList.getAsJsonArray()) {
+                if (sound.isJsonObject()) {
+                    // Event sounds refer to another sound event instead of a file
+                    if ("event".equals(getString(sound.getAsJsonObject().get("type"))))
+                        continue;
+
+                    this.referenceString(name, sound.getAsJsonObject().get("name"), "sounds/", ".ogg");
+                } else {
+                    this.referenceString(name, sound, "sounds/", ".ogg");
+                }
+            }
+        }
+    }
+
+    private void referenceModel(final String name, final JsonElement model) {
+        final String value = getString(model);
+
+        // Built-in models have no file
+        if (value != null && !value.startsWith("builtin/") && !value.startsWith("minecraft:builtin/"))
+            this.reference(name, toPath(value, "models/", ".json", "minecraft"));
+    }
+
+    private void referenceString(final String name, final JsonElement element, final String folder, final String suffix) {
+        final String value = getString(element);
+
+        if (value != null)
+            this.reference(name, toPath(value, folder, suffix, "minecraft"));
+    }
+
+    private void reference(final String referrer, final String name) {
+        if (this.entries.containsKey(name)) {
+            this.markReachable(name);
+            return;
+        }
+
+        if (!name.startsWith("assets/minecraft/"))
+            this.brokenReferences.computeIfAbsent(name, key -> new TreeSet<>()).add(referrer);
+    }
+
+    private void markReachable(final String name) {
+        if (!this.reachable.add(name))
+            return;
+
+        this.pending.add(name);
+
+        // Animation and filtering settings belong to their texture
+        if (this.entries.containsKey(name + ".mcmeta"))
+            this.markReachable(name + ".mcmeta");
+    }
+
+    private void forEachString(final JsonElement element, final Consumer<String> consumer) {
+        if (element == null || !element.isJsonArray())
+            return;
+
+        for (final JsonElement value : element.getAsJsonArray()) {
+            final String string = getString(value);
+
+            if (string != null)
+                consumer.accept(string);
+        }
+    }
+
+    private static boolean isCandidate(final String name) {
+        return name.matches("assets/[^/]+/(models|textures|sounds)/.*");
+    }
+
+    private static String getString(final JsonElement element) {
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isString() ? element.getAsString() : null;
+    }
+
+    private static String toPath(final String reference, final String folder, final String suffix, final String defaultNamespace) {
+        final int separator = reference.indexOf(':');
+        final String namespace = separator == -1 ? defaultNamespace : reference.substring(0, separator);
+        return "assets/" + namespace + "/" + folder + reference.substring(separator + 1) + suffix;
+    }
+}
@@ -0,0 +1,57 @@
+package dev.axolotlmc.axolotl.pack;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.AxolotlSound;
+import dev.axolotlmc.axolotl.api.CustomItem;
+import dev.axolotlmc.axolotl.api.Glyph;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Glyphs, sounds and custom items of one pack build. Never modified after it was created,
+ * so a reload replaces it as a whole and readers never see a mix of two builds.
+ *
+ * @author Kenox
+ */
+@Getter
+public class PackRegistry {
+
+    public static final PackRegistry EMPTY = new PackRegistry(List.of(), List.of(), List.of(), 0);
+
+    private final List<Glyph> glyphs;
+    private final Map<String, Glyph> glyphsByName;
+    private final ShiftTable shiftTable;
+    private final List<AxolotlSound> axolotlSounds;
+    private final List<CustomItem> customItems;
+    private final CustomItemIndex customItemIndex;
+
+    public PackRegistry(final List<Glyph> glyphs, final List<AxolotlSound> axolotlSounds, final List<CustomItem> customItems,
+                        final int maxShiftWidth) {
+        final Map<String, Glyph> glyphsByName = new HashMap<>();
+        final List<Glyph> uniqueGlyphs = new ArrayList<>();
+
+        // Code points are assigned by name, so later duplicates would claim a character the first one already has
+        for (final Glyph glyph : glyphs) {
+            if (glyphsByName.putIfAbsent(glyph.getName(), glyph) != null) {
+                AxolotlMod.LOGGER.warn("Glyph " + glyph.getName() + " is defined more than once, only the first one is used");
+                continue;
+            }
+
+            if (glyph.hasConfiguredCharacter())
+                AxolotlMod.LOGGER.warn("Glyph " + glyph.getName() + " sets a char, it is ignored as characters are assigned by the pack build");
+
+            uniqueGlyphs.add(glyph);
+        }
+
+        this.glyphs = List.copyOf(uniqueGlyphs);
+        this.glyphsByName = Map.copyOf(glyphsByName);
+        this.shiftTable = new ShiftTable(glyphsByName, maxShiftWidth);
+        this.axolotlSounds = List.copyOf(axolotlSounds);
+        this.customItems = List.copyOf(customItems);
+        this.customItemIndex = new CustomItemIndex(customItems);
+    }
+}
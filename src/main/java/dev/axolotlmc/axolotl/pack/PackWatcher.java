@@ -0,0 +1,154 @@
+package dev.axolotlmc.axolotl.pack;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the pack sources and rebuilds the pack once changes stopped coming in for the debounce time.
+ * The build itself only re-hashes touched files and reuses unchanged entries of the previous pack.zip,
+ * a new pack hash is then sent to online players by {@link dev.axolotlmc.axolotl.delivery.PackDelivery}.
+ *
+ * @author Kenox
+ */
+@RequiredArgsConstructor
+public class PackWatcher implements Closeable {
+
+    private final ResourcePack resourcePack;
+    private final long debounceMillis;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+
+    public void start() throws IOException {
+        final Path modFolder = this.resourcePack.getMod().getModFolder().toPath();
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        // The mod folder itself is only watched for sounds.json, the pack is written next to it
+        this.register(modFolder);
+        this.registerTree(modFolder.resolve("glyphs"));
+        this.registerTree(modFolder.resolve("items"));
+        this.registerTree(this.resourcePack.getPackDirectory().toPath());
+
+        this.thread = new Thread(this::run, "Axolotl Pack Watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+
+        AxolotlMod.LOGGER.info("Watching " + this.directories.size() + " directories for pack changes");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.watchService != null)
+            this.watchService.close();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!this.handle(this.watchService.take()))
+                    continue;
+
+                // Wait until the burst of changes is over, editors and copies touch files several times
+                WatchKey key;
+
+                while ((key = this.watchService.poll(this.debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    this.handle(key);
+                }
+
+                this.rebuild();
+            }
+        } catch (final ClosedWatchServiceException | InterruptedException ignored) {
+            // Server is stopping
+        }
+    }
+
+    /**
+     * @return whether the key contained a change to a pack source
+     */
+    private boolean handle(final WatchKey key) {
+        final Path directory = this.directories.get(key);
+        boolean relevant = false;
+
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                relevant = true;
+                continue;
+            }
+
+            final Path path = directory.resolve((Path) event.context());
+
+            if (directory.equals(this.resourcePack.getMod().getModFolder().toPath()) && !this.isSource(path))
+                continue;
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    this.registerTree(path);
+                } catch (final IOException e) {
+                    AxolotlMod.LOGGER.warn("Unable to watch " + path, e);
+                }
+            }
+
+            relevant = true;
+        }
+
+        if (!key.reset())
+            this.directories.remove(key);
+
+        return relevant;
+    }
+
+    private boolean isSource(final Path path) {
+        final String name = path.getFileName().toString();
+        return name.equals("sounds.json") || name.equals("glyphs") || name.equals("items")
+                || path.equals(this.resourcePack.getPackDirectory().toPath());
+    }
+
+    private void rebuild() {
+        AxolotlMod.LOGGER.info("Pack sources changed, rebuilding..");
+        final long start = System.currentTimeMillis();
+
+        try {
+            this.resourcePack.generate();
+            AxolotlMod.LOGGER.info("Rebuilt pack in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (final IOException | RuntimeException e) {
+            // Keep the last working pack, the next change gets another chance
+            AxolotlMod.LOGGER.error("Unable to rebuild pack", e);
+        }
+    }
+
+    private void registerTree(final Path root) throws IOException {
+        if (!Files.isDirectory(root))
+            return;
+
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes) throws IOException {
+                PackWatcher.this.register(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(final Path directory) throws IOException {
+        final WatchKey key = directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.directories.put(key, directory);
+    }
+}
@@ -3,26 +3,42 @@ package dev.axolotlmc.axolotl.pack;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import dev.axolotlmc.axolotl.AxolotlMod;
 import dev.axolotlmc.axolotl.api.AxolotlSound;
 import dev.axolotlmc.axolotl.api.CustomItem;
 import dev.axolotlmc.axolotl.api.Glyph;
+import dev.axolotlmc.axolotl.api.config.bucket.ResourcePackConfig;
+import dev.axolotlmc.axolotl.api.metrics.BuildRecorder;
+import dev.axolotlmc.axolotl.api.metrics.PhaseRecorder;
+import dev.axolotlmc.axolotl.delivery.PackHttpServer;
+import dev.axolotlmc.axolotl.delivery.PackUploader;
+import dev.axolotlmc.axolotl.util.AsyncUtil;
+import dev.axolotlmc.axolotl.util.HashUtil;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import net.minecraft.util.registry.Registry;
-import okhttp3.*;
+import net.minecraft.text.Text;
 import org.apache.commons.io.FileUtils;
-import org.jetbrains.annotations.NotNull;
-import org.zeroturnaround.zip.ZipUtil;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
 
@@ -32,357 +48,597 @@ import static dev.axolotlmc.axolotl.AxolotlMod.GSON;
 @RequiredArgsConstructor
 public class ResourcePack {
 
-    private static final int MIN_CODE = 42000;
+    private static final int DEFAULT_MAX_SHIFT_WIDTH = 256;
     private static final String[] DEFAULT_DIRS = new String[]{"textures", "lang", "shaders", "sounds",
             "blockstates", "optifine", "models"};
-    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
-            .connectTimeout(120, TimeUnit.SECONDS)
-            .readTimeout(120, TimeUnit.SECONDS)
-            .writeTimeout(120, TimeUnit.SECONDS)
-            .build();
 
     @Getter private final AxolotlMod mod;
     @Getter private final File packDirectory;
     @Getter private String lastReceivedPackHash;
-    @Getter private final List<Glyph> glyphs = new ArrayList<>();
-    @Getter private List<AxolotlSound> axolotlSounds = new ArrayList<>();
-    @Getter private final List<CustomItem> customItems = new ArrayList<>();
+    @Getter private BuildManifest manifest;
+    @Getter private volatile PackRegistry registry = PackRegistry.EMPTY;
+
+    /**
+     * Builds, publishes and uploads the pack. Only one build runs at a time, reloads wait for the running build.
+     */
+    public synchronized void generate() throws IOException {
+        final int buildThreads = this.mod.getConfig().getResourcePackConfig().getBuildThreads();
+        final int parallelism = buildThreads > 0 ? buildThreads : Runtime.getRuntime().availableProcessors();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        final BuildRecorder recorder = AxolotlMod.METRICS.startBuild();
+        final BuildManifest manifest;
+
+        try {
+            manifest = this.build(pool, parallelism, recorder);
+        } finally {
+            pool.shutdown();
+        }
+
+        recorder.finish();
+        this.recordMetrics(recorder, manifest.getPackHash());
 
-    public void generate() throws IOException {
-        // Generate all glyphs (files with ".json"-suffix inside "glyphs" directory)
-        this.generateGlyphs();
+        // Serve pack from the built-in pack server
+        final PackHttpServer packServer = this.mod.getPackServer();
 
-        // Load sounds into "axolotl" namespace
-        this.loadSounds();
+        if (packServer != null) {
+            packServer.publish(new File(this.mod.getModFolder(), "pack.zip"), manifest.getPackHash());
+            this.mod.updatePackUrlAndHash(packServer.getUrl(manifest.getPackHash()), manifest.getPackHash());
+        }
+
+        // Upload pack to bucket
+        this.upload(manifest, recorder);
+    }
 
+    private BuildManifest build(final ForkJoinPool pool, final int parallelism, final BuildRecorder recorder) throws IOException {
         // Initializes final pack files
         final File compressedPack = new File(this.mod.getModFolder(), "pack.zip");
+        final File manifestFile = new File(this.mod.getModFolder(), "pack-manifest.json");
+        final int packCompression = this.mod.getConfig().getResourcePackConfig().getPackCompression();
+        final boolean deterministic = this.mod.getConfig().getResourcePackConfig().isDeterministicPack();
+        final boolean glyphAtlas = this.mod.getConfig().getResourcePackConfig().isGlyphAtlas();
+        final boolean optimizeAssets = this.mod.getConfig().getResourcePackConfig().isOptimizeAssets();
+        final List<String> pruneKeepPrefixes = this.getPruneKeepPrefixes();
+        final BuildManifest previousManifest = BuildManifest.load(manifestFile);
+
+        // Load glyphs, sounds and custom items while hashing all inputs
+        final PhaseRecorder glyphPhase = recorder.phase(BuildRecorder.GLYPH_LOAD);
+        final PhaseRecorder soundPhase = recorder.phase(BuildRecorder.SOUND_LOAD);
+        final CompletableFuture<List<Glyph>> glyphsFuture = this.loadGlyphs(glyphPhase.wrap(pool), glyphPhase);
+        final CompletableFuture<List<AxolotlSound>> soundsFuture = AsyncUtil.supplyAsync(() -> this.loadSounds(soundPhase), soundPhase.wrap(pool));
+        final PhaseRecorder itemPhase = recorder.phase(BuildRecorder.ITEM_LOAD);
+        final CompletableFuture<List<CustomItem>> itemsFuture = this.loadDefinitions("items", "custom items",
+                new TypeToken<List<CustomItem>>() {
+                }.getType(), itemPhase.wrap(pool), itemPhase);
+        final PhaseRecorder hashingPhase = recorder.phase(BuildRecorder.HASHING);
+        final CompletableFuture<Map<String, BuildManifest.InputRecord>> inputsFuture = this.hashInputs(previousManifest, hashingPhase.wrap(pool),
+                hashingPhase);
+
+        final List<Glyph> glyphs = AsyncUtil.join(glyphsFuture);
+        final String glyphCodes = glyphPhase.measure(() -> this.assignGlyphCodes(glyphs));
+        final int maxShiftWidth = this.mod.getConfig().getResourcePackConfig().getMaxShiftWidth();
+        final PackRegistry registry = new PackRegistry(glyphs, AsyncUtil.join(soundsFuture), AsyncUtil.join(itemsFuture),
+                maxShiftWidth > 0 ? maxShiftWidth : DEFAULT_MAX_SHIFT_WIDTH);
+
+        // Compare all inputs against the last build
+        final BuildManifest manifest = new BuildManifest();
+        manifest.setPackCompression(packCompression);
+        manifest.setDeterministic(deterministic);
+        manifest.setGlyphAtlas(glyphAtlas);
+        manifest.setOptimizeAssets(optimizeAssets);
+        manifest.setPruneKeepPrefixes(pruneKeepPrefixes);
+        manifest.setInputs(AsyncUtil.join(inputsFuture));
+        // The font depends on the assigned characters, not only on the glyph files
+        manifest.getInputs().put("glyph-codes.json", new BuildManifest.InputRecord(glyphCodes, 0, 0));
+        manifest.setUploadedHash(previousManifest.getUploadedHash());
+
+        final boolean previousPackIntact = previousManifest.getPackHash() != null
+                && previousManifest.getPackCompression() == packCompression
+                && previousManifest.isDeterministic() == deterministic
+                && previousManifest.isGlyphAtlas() == glyphAtlas
+                && previousManifest.isOptimizeAssets() == optimizeAssets
+                && Objects.equals(previousManifest.getPruneKeepPrefixes(), pruneKeepPrefixes)
+                && compressedPack.exists()
+                && HashUtil.sha1(compressedPack).equals(previousManifest.getPackHash());
+
+        if (previousPackIntact && manifest.hasSameInputs(previousManifest)) {
+            AxolotlMod.LOGGER.info("Pack inputs did not change since the last build, skipping generation");
+            manifest.setPackHash(previousManifest.getPackHash());
+            manifest.setOutputs(previousManifest.getOutputs());
+            manifest.setBuild(previousManifest.getBuild());
+            manifest.setHistory(previousManifest.getHistory());
+        } else {
+            this.buildPack(registry, compressedPack, manifest, previousPackIntact ? previousManifest : null, pool, parallelism, recorder);
+
+            // Only bookkeeping in the manifest, players always receive the whole pack.zip
+            if (this.mod.getConfig().getResourcePackConfig().isRecordChangeHistory())
+                manifest.recordHistory(previousManifest);
+        }
 
-        final File prodDir = new File(this.mod.getModFolder(), "pack-prod");
-        if (prodDir.exists())
-            prodDir.delete();
-        prodDir.mkdirs();
-
-        // Generate "default.json" inside font directory
-        this.generateFontFile();
+        this.registry = registry;
+        this.manifest = manifest;
+        manifest.save(manifestFile);
 
-        // Copy axolotl pack to a production directory, so we can proceed generating anything
-        FileUtils.copyDirectory(this.packDirectory, prodDir);
+        // The join message uses the shifts of the new registry
+        this.mod.getPackDelivery().refreshSnapshot();
+        return manifest;
+    }
 
-        // Create default dirs and move them correctly
-        for (final String defaultDir : DEFAULT_DIRS) {
-            final File defaultDirFile = new File(this.mod.getModFolder(), "pack-prod/" + defaultDir);
+    private void upload(final BuildManifest manifest, final BuildRecorder recorder) throws IOException {
+        final File compressedPack = new File(this.mod.getModFolder(), "pack.zip");
+        final File manifestFile = new File(this.mod.getModFolder(), "pack-manifest.json");
 
-            if (!defaultDirFile.exists())
-                defaultDirFile.mkdirs();
+        if (!this.mod.getConfig().getBucketConfig().isUpload()) {
+            AxolotlMod.LOGGER.warn("Cancelling pack upload to bucket due to configuration..");
+            return;
+        }
 
-            final File targetDir = new File(this.mod.getModFolder(), "pack-prod/assets/minecraft/" + defaultDir);
+        final String packHash = manifest.getPackHash();
 
-            if (targetDir.exists())
-                targetDir.delete();
+        if (packHash.equals(manifest.getUploadedHash())) {
+            AxolotlMod.LOGGER.info("Pack did not change since the last upload, skipping upload");
 
-            FileUtils.moveDirectory(defaultDirFile, targetDir);
+            if (this.mod.getPackServer() == null && !packHash.equals(this.mod.getConfig().getHash()))
+                this.mod.updatePackUrlAndHash(String.format(this.mod.getDownloadPackApiUrl(), packHash), packHash);
+            return;
         }
 
-        // Generate custom items
-        this.generateItems();
-
-        // Create sounds.json with "axolotl" as namespace
-        final File namespaceDir = new File(this.mod.getModFolder(), "pack-prod/assets/axolotl");
+        new PackUploader(this.mod).upload(compressedPack, packHash, recorder.phase(BuildRecorder.UPLOAD)).whenComplete((hash, throwable) -> {
+            this.recordMetrics(recorder, packHash);
 
-        if (namespaceDir.exists())
-            namespaceDir.delete();
-
-        namespaceDir.mkdirs();
+            if (throwable != null) {
+                AxolotlMod.LOGGER.error("Unable to upload pack to bucket, keeping the previous pack url", throwable.getCause() == null ? throwable : throwable.getCause());
+                return;
+            }
 
-        final File prodSoundsFile = new File(namespaceDir, "sounds.json");
+            this.lastReceivedPackHash = hash;
 
-        if (prodSoundsFile.exists())
-            prodSoundsFile.delete();
+            // The local hash identifies the pack, the bucket only confirms it received the same bytes
+            if (!hash.equalsIgnoreCase(packHash)) {
+                AxolotlMod.LOGGER.error("Bucket reported hash " + hash + " but the uploaded pack has hash " + packHash
+                        + ", keeping the previous pack url");
+                return;
+            }
 
-        prodSoundsFile.createNewFile();
+            this.onUploaded(manifest, manifestFile);
+        });
+    }
 
-        final JsonObject soundsObject = new JsonObject();
+    /**
+     * Runs on the uploader thread, under the same lock as {@link #generate()} so it can not overwrite a newer manifest.
+     */
+    private synchronized void onUploaded(final BuildManifest manifest, final File manifestFile) {
+        // A newer build finished meanwhile, its pack and manifest replace this one
+        if (this.manifest != manifest) {
+            AxolotlMod.LOGGER.info("Pack " + manifest.getPackHash() + " was replaced by a newer build, ignoring its upload");
+            return;
+        }
 
-        this.axolotlSounds.forEach(axolotlSound -> {
-            final JsonObject soundObject = new JsonObject();
-            soundObject.add("category", new JsonPrimitive(axolotlSound.getSoundCategory().getName()));
+        try {
+            // The built-in pack server stays the download source when it is enabled
+            if (this.mod.getPackServer() == null)
+                this.mod.updatePackUrlAndHash(String.format(this.mod.getDownloadPackApiUrl(), manifest.getPackHash()), manifest.getPackHash());
 
-            final JsonArray soundsArray = new JsonArray();
-            soundsArray.add(new JsonPrimitive(axolotlSound.getName()));
-            soundObject.add("sounds", soundsArray);
+            manifest.setUploadedHash(manifest.getPackHash());
+            manifest.save(manifestFile);
+        } catch (final IOException e) {
+            AxolotlMod.LOGGER.error("Unable to save uploaded pack hash", e);
+        }
+    }
 
-            soundsObject.add(axolotlSound.getName(), soundObject);
-        });
+    private void buildPack(final PackRegistry registry, final File compressedPack, final BuildManifest manifest, @Nullable final BuildManifest previousManifest,
+                           final Executor executor, final int parallelism, final BuildRecorder recorder) throws IOException {
+        final PackAssembler assembler = new PackAssembler(System.currentTimeMillis(), manifest.isDeterministic());
+
+        // Generate font, item models and sounds while the pack directory is scanned
+        final PhaseRecorder fontPhase = recorder.phase(BuildRecorder.FONT_GENERATION);
+        final PhaseRecorder itemPhase = recorder.phase(BuildRecorder.ITEM_GENERATION);
+        final CompletableFuture<GlyphAtlas> atlasFuture = manifest.isGlyphAtlas()
+                ? AsyncUtil.supplyAsync(() -> GlyphAtlas.pack(registry.getGlyphs(), this::resolveTexture), fontPhase.wrap(executor))
+                : CompletableFuture.completedFuture(null);
+        final CompletableFuture<String> fontFuture = atlasFuture.thenApplyAsync(atlas -> this.generateFontFile(registry.getGlyphs(), atlas),
+                fontPhase.wrap(executor));
+        final CompletableFuture<Map<String, String>> itemsFuture = CompletableFuture.supplyAsync(() -> ItemModelGenerator.generate(registry.getCustomItems()),
+                itemPhase.wrap(executor));
+        final CompletableFuture<String> soundsFuture = CompletableFuture.supplyAsync(() -> this.generateSoundsFile(registry.getAxolotlSounds()), executor);
+
+        // Add "default.json" inside font directory
+        final String font = AsyncUtil.join(fontFuture);
+        assembler.addGenerated("assets/minecraft/font/default.json", font);
+        fontPhase.addEntries(registry.getGlyphs().size());
+        fontPhase.addBytesWritten(font.length());
+
+        // Add the axolotl pack and move default dirs into the "minecraft" namespace
+        for (final String defaultDir : DEFAULT_DIRS)
+            assembler.addDirectory("assets/minecraft/" + defaultDir + "/", assembler.getBuildTime());
+
+        final PhaseRecorder copyPhase = recorder.phase(BuildRecorder.COPY);
+        final int entriesBefore = assembler.getEntries().size();
+        copyPhase.run(() -> assembler.addSourceTree(this.packDirectory, ResourcePack::mapPackPath));
+        copyPhase.addEntries(assembler.getEntries().size() - entriesBefore);
+
+        // Add glyph sheets
+        final GlyphAtlas atlas = AsyncUtil.join(atlasFuture);
+
+        if (atlas != null) {
+            atlas.getSheets().forEach(assembler::addGenerated);
+            atlas.getSheets().values().forEach(sheet -> fontPhase.addBytesWritten(sheet.length));
+            AxolotlMod.LOGGER.info("Packed " + atlas.getPackedGlyphs().size() + " glyphs into " + atlas.getSheets().size() + " sheets");
+        }
 
-        FileUtils.writeStringToFile(prodSoundsFile, soundsObject.toString(), StandardCharsets.UTF_8);
+        // Add custom item models
+        final Map<String, String> itemModels = AsyncUtil.join(itemsFuture);
+        itemModels.forEach(assembler::addGenerated);
+        itemPhase.addEntries(itemModels.size());
+        itemModels.values().forEach(model -> itemPhase.addBytesWritten(model.length()));
 
-        ZipUtil.pack(prodDir, compressedPack, this.mod.getConfig().getResourcePackConfig().getPackCompression());
+        // Add sounds.json with "axolotl" as namespace
+        assembler.addGenerated("assets/axolotl/sounds.json", AsyncUtil.join(soundsFuture));
 
-        FileUtils.deleteDirectory(prodDir);
+        // Font textures of packed glyphs are left out once nothing refers to them anymore, the generated font uses the sheets instead.
+        // Glyphs that were not packed, other fonts and item models still refer to theirs, so those stay
+        if (atlas != null) {
+            final PackReachability fontReachability = PackReachability.analyze(assembler.getEntries(), List.of());
 
-        // Upload pack to bucket
-        if (!this.mod.getConfig().getBucketConfig().isUpload()) {
-            AxolotlMod.LOGGER.warn("Cancelling pack upload to bucket due to configuration..");
-            return;
+            atlas.getPackedTextures().stream()
+                    .map(GlyphAtlas::getTextureEntry)
+                    .filter(entry -> entry.contains("/textures/font/") && fontReachability.getUnreferenced().containsKey(entry))
+                    .forEach(assembler::remove);
         }
 
-        AxolotlMod.LOGGER.info("Uploading pack to bucket..");
+        // Find models, textures and sounds nothing refers to
+        final ResourcePackConfig resourcePackConfig = this.mod.getConfig().getResourcePackConfig();
 
-        final RequestBody formBody = new MultipartBody.Builder()
-                .setType(MultipartBody.FORM)
-                .addFormDataPart("file", compressedPack.getName(),
-                        RequestBody.create(compressedPack, MediaType.parse("application/zip")))
-                .build();
+        if (resourcePackConfig.isAssetReport() || manifest.getPruneKeepPrefixes() != null) {
+            final PackReachability reachability = PackReachability.analyze(assembler.getEntries(),
+                    manifest.getPruneKeepPrefixes() == null ? PackReachability.DEFAULT_KEEP_PREFIXES : manifest.getPruneKeepPrefixes());
 
-        final Request request = new Request.Builder()
-                .url(this.mod.getPackApiUrl())
-                .addHeader("X-API-Key", this.mod.getConfig().getBucketConfig().getBucketApiKey())
-                .put(formBody)
-                .build();
+            if (resourcePackConfig.isAssetReport())
+                FileUtils.writeStringToFile(new File(this.mod.getModFolder(), "pack-report.txt"), reachability.createReport(), StandardCharsets.UTF_8);
 
-        final long start = System.currentTimeMillis();
+            reachability.getBrokenReferences().forEach((name, referrers) ->
+                    AxolotlMod.LOGGER.warn("Missing " + name + ", referenced by " + String.join(", ", referrers)));
 
-        HTTP_CLIENT.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(@NotNull final Call call, @NotNull final IOException e) {
-                e.printStackTrace();
-            }
+            if (manifest.getPruneKeepPrefixes() != null) {
+                long prunedBytes = 0;
 
-            @Override
-            public void onResponse(@NotNull final Call call, @NotNull final Response response) throws IOException {
-                final ResponseBody responseBody = response.body();
+                for (final Map.Entry<String, Long> entry : reachability.getUnreferenced().entrySet()) {
+                    if (reachability.isKept(entry.getKey()))
+                        continue;
 
-                if (responseBody == null) {
-                    AxolotlMod.LOGGER.warn("Bucket responded with null as download URL!");
-                    return;
+                    assembler.remove(entry.getKey());
+                    prunedBytes += entry.getValue();
                 }
 
-                final String hash = responseBody.string();
-                response.close();
+                AxolotlMod.LOGGER.info("Pruned unreferenced assets, saving " + prunedBytes / 1024 + " KiB");
+            } else {
+                AxolotlMod.LOGGER.info("Found " + reachability.getUnreferenced().size() + " unreferenced assets ("
+                        + reachability.getUnreferencedBytes() / 1024 + " KiB), see pack-report.txt");
+            }
+        }
 
-                AxolotlMod.LOGGER.info("Got new hash in " + (System.currentTimeMillis() - start) + "ms: " + hash);
+        // Compress the pack, entries that did not change are copied from the previous pack.zip
+        final File packFile = new File(this.mod.getModFolder(), "pack.zip.tmp");
+        final PackArchiveWriter writer = new PackArchiveWriter(packFile, manifest.getPackCompression(), manifest.isDeterministic(),
+                previousManifest, compressedPack);
 
-                ResourcePack.this.lastReceivedPackHash = hash;
+        // Optimized files are cached by the hash of their source, so only changed files are optimized again
+        final AssetOptimizer optimizer = manifest.isOptimizeAssets() ? new AssetOptimizer(new File(this.mod.getModFolder(), "pack-cache")) : null;
 
-                ResourcePack.this.mod.updatePackUrlAndHash(String.format(ResourcePack.this.mod.getDownloadPackApiUrl(), hash), hash);
+        final PhaseRecorder compressionPhase = recorder.phase(BuildRecorder.COMPRESSION);
+        final List<PackEntry> entries = assembler.getOrderedEntries();
+
+        compressionPhase.run(() -> {
+            try (writer) {
+                writer.addAll(entries, optimizer == null ? PackEntry::read : optimizer::read, compressionPhase.wrap(executor), parallelism);
             }
         });
+
+        compressionPhase.addEntries(writer.getEntryCount());
+        compressionPhase.addBytesRead(entries.stream().mapToLong(PackEntry::getSize).sum());
+        compressionPhase.addBytesWritten(packFile.length());
+
+        if (optimizer != null) {
+            optimizer.cleanUp();
+            AxolotlMod.LOGGER.info("Optimized new assets, saving " + optimizer.getSavedBytes() / 1024 + " KiB");
+        }
+
+        Files.move(packFile.toPath(), compressedPack.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        manifest.setOutputs(writer.getOutputs());
+        manifest.setPackHash(writer.getHash());
+
+        AxolotlMod.LOGGER.info("Packed " + writer.getEntryCount() + " entries (" + writer.getReusedEntries()
+                + " reused from the previous build): " + manifest.getPackHash());
     }
 
-    private void generateGlyphs() throws IOException {
-        // Generate glyphs
-        AxolotlMod.LOGGER.info("Generating glyphs..");
+    private void recordMetrics(final BuildRecorder recorder, final String packHash) {
+        AxolotlMod.METRICS.recordBuild(recorder.toMetrics(packHash));
 
-        final File glyphFolder = new File(this.mod.getModFolder(), "glyphs");
+        if (!this.mod.getConfig().getResourcePackConfig().isExportMetrics())
+            return;
 
-        if (!glyphFolder.exists())
-            glyphFolder.mkdirs();
+        try {
+            AxolotlMod.METRICS.save(new File(this.mod.getModFolder(), "pack-metrics.json"));
+        } catch (final IOException e) {
+            AxolotlMod.LOGGER.error("Unable to save pack metrics", e);
+        }
+    }
 
-        for (final File file : glyphFolder.listFiles()) {
-            if (file.isDirectory()) {
-                AxolotlMod.LOGGER.warn("Directories for glyphs are currently not supported! (" + file.getAbsolutePath() + ")");
-                continue;
-            }
+    private static String mapPackPath(final String path) {
+        final int separator = path.indexOf('/');
+        final String rootDir = separator == -1 ? path : path.substring(0, separator);
 
-            if (!file.getName().endsWith(".json")) {
-                AxolotlMod.LOGGER.warn("Skipping glyph file " + file.getName() + " as it does not end with '.json'");
-                continue;
-            }
+        for (final String defaultDir : DEFAULT_DIRS) {
+            if (defaultDir.equals(rootDir))
+                return "assets/minecraft/" + path;
+        }
+
+        return path;
+    }
 
-            final List<Glyph> foundGlyphs = GSON.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8),
-                    new TypeToken<List<Glyph>>() {
-                    }.getType());
+    /**
+     * @return prefixes of files that are never pruned, {@code null} if pruning is disabled
+     */
+    @Nullable
+    private List<String> getPruneKeepPrefixes() {
+        final ResourcePackConfig resourcePackConfig = this.mod.getConfig().getResourcePackConfig();
 
-            foundGlyphs.forEach(glyph -> {
-                this.glyphs.add(glyph);
-                glyph.setCharacter((char) this.getFirstCode(MIN_CODE));
-            });
+        if (!resourcePackConfig.isPruneAssets())
+            return null;
 
-            AxolotlMod.LOGGER.info("Found " + foundGlyphs.size() + " glyphs (" + file.getName() + ")");
+        return resourcePackConfig.getPruneKeepPrefixes() == null
+                ? PackReachability.DEFAULT_KEEP_PREFIXES : resourcePackConfig.getPruneKeepPrefixes();
+    }
+
+    /**
+     * @return source file of a texture reference such as {@code minecraft:font/heart.png}, {@code null} if it is not part of the pack
+     */
+    @Nullable
+    private File resolveTexture(final String texture) {
+        final String entry = GlyphAtlas.getTextureEntry(texture);
+        final File file = new File(this.packDirectory, entry);
+
+        if (file.isFile())
+            return file;
+
+        // Default dirs are moved into the "minecraft" namespace
+        if (entry.startsWith("assets/minecraft/")) {
+            final File defaultDirFile = new File(this.packDirectory, entry.substring("assets/minecraft/".length()));
+
+            if (defaultDirFile.isFile())
+                return defaultDirFile;
         }
+
+        return null;
     }
 
-    private void loadSounds() throws IOException {
-        // Load sounds
+    private CompletableFuture<Map<String, BuildManifest.InputRecord>> hashInputs(final BuildManifest previousManifest, final Executor executor,
+                                                                         final PhaseRecorder phase) {
+        final Map<String, File> inputFiles = new TreeMap<>();
+
+        this.collectInputs(this.packDirectory, "pack/", inputFiles, false);
+        this.collectInputs(new File(this.mod.getModFolder(), "glyphs"), "glyphs/", inputFiles, true);
+        this.collectInputs(new File(this.mod.getModFolder(), "items"), "items/", inputFiles, true);
+
         final File soundsFile = new File(this.mod.getModFolder(), "sounds.json");
+        if (soundsFile.exists())
+            inputFiles.put("sounds.json", soundsFile);
+
+        final Map<String, CompletableFuture<BuildManifest.InputRecord>> futures = new TreeMap<>();
+        inputFiles.forEach((name, file) -> futures.put(name, AsyncUtil.supplyAsync(() -> this.hashInput(file, name, previousManifest, phase),
+                executor)));
+
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            final Map<String, BuildManifest.InputRecord> inputs = new TreeMap<>();
+            futures.forEach((name, future) -> inputs.put(name, future.join()));
+            phase.addEntries(inputs.size());
+            return inputs;
+        });
+    }
+
+    private void collectInputs(final File directory, final String path, final Map<String, File> inputFiles, final boolean jsonOnly) {
+        final File[] files = directory.listFiles();
+
+        if (files == null)
+            return;
+
+        for (final File file : files) {
+            final String name = path + file.getName();
+
+            if (file.isDirectory()) {
+                // Glyph and item folders are flat, nested directories are skipped while loading
+                if (!jsonOnly)
+                    this.collectInputs(file, name + "/", inputFiles, false);
+                continue;
+            }
 
-        if (soundsFile.exists()) {
-            this.axolotlSounds = GSON.fromJson(FileUtils.readFileToString(soundsFile, StandardCharsets.UTF_8),
-                    new TypeToken<List<AxolotlSound>>() {
-                    }.getType());
+            if (jsonOnly && !file.getName().endsWith(".json"))
+                continue;
 
-            AxolotlMod.LOGGER.info("Found " + this.axolotlSounds.size() + " custom sounds");
+            inputFiles.put(name, file);
         }
     }
 
-    private void generateFontFile() throws IOException {
-        // Generate font file
-        final File defaultFontDir = new File(this.mod.getModFolder(), "pack-prod/assets/minecraft/font/");
-        defaultFontDir.mkdirs();
-        final File defaultFontFile = new File(defaultFontDir, "default.json");
-        defaultFontFile.createNewFile();
+    private BuildManifest.InputRecord hashInput(final File file, final String name, final BuildManifest previousManifest, final PhaseRecorder phase)
+            throws IOException {
+        final BuildManifest.InputRecord previousRecord = previousManifest.getInputs().get(name);
 
-        final JsonObject fontObject = new JsonObject();
-        final JsonArray providersArray = new JsonArray();
+        // Only hash files again when they were touched
+        if (previousRecord != null && previousRecord.getSize() == file.length() && previousRecord.getModified() == file.lastModified())
+            return previousRecord;
 
-        this.glyphs.forEach(glyph -> {
-            final JsonObject glyphObject = new JsonObject();
+        final BuildManifest.InputRecord record = new BuildManifest.InputRecord(HashUtil.sha1(file), file.length(), file.lastModified());
+        phase.addBytesRead(record.getSize());
+        return record;
+    }
 
-            final JsonArray charsArray = new JsonArray();
-            charsArray.add(glyph.getCharacter().toString());
-            glyphObject.add("chars", charsArray);
+    private CompletableFuture<List<Glyph>> loadGlyphs(final Executor executor, final PhaseRecorder phase) {
+        // Generate glyphs
+        AxolotlMod.LOGGER.info("Generating glyphs..");
 
-            glyphObject.add("file", new JsonPrimitive(glyph.getTexture()));
-            glyphObject.add("ascent", new JsonPrimitive(glyph.getAscent()));
-            glyphObject.add("height", new JsonPrimitive(glyph.getHeight()));
-            glyphObject.add("type", new JsonPrimitive("bitmap"));
+        return this.<Glyph>loadDefinitions("glyphs", "glyphs", new TypeToken<List<Glyph>>() {
+        }.getType(), executor, phase);
+    }
 
-            providersArray.add(glyphObject);
-        });
+    /**
+     * @return hash of the assigned code points
+     */
+    private String assignGlyphCodes(final List<Glyph> glyphs) throws IOException {
+        final File codesFile = new File(this.mod.getModFolder(), "glyph-codes.json");
+        final GlyphAllocator allocator = GlyphAllocator.load(codesFile);
+        allocator.allocate(glyphs);
+        allocator.save(codesFile);
 
-        fontObject.add("providers", providersArray);
-        FileUtils.writeStringToFile(defaultFontFile, fontObject.toString(), StandardCharsets.UTF_8);
+        return HashUtil.sha1(GSON.toJson(allocator.getCodePoints()).getBytes(StandardCharsets.UTF_8));
     }
 
-    private void generateItems() throws IOException {
-        // Load items
-        final File itemsFolder = new File(this.mod.getModFolder(), "items");
+    private <T> CompletableFuture<List<T>> loadDefinitions(final String folderName, final String label, final Type type,
+                                                           final Executor executor, final PhaseRecorder phase) {
+        final File folder = new File(this.mod.getModFolder(), folderName);
+
+        if (!folder.exists())
+            folder.mkdirs();
 
-        if (!itemsFolder.exists())
-            itemsFolder.mkdirs();
+        final List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        final File[] files = folder.listFiles();
+        // Sorted, so glyph characters and item order do not depend on the file system
+        Arrays.sort(files, Comparator.comparing(File::getName));
 
-        for (final File file : itemsFolder.listFiles()) {
+        for (final File file : files) {
             if (file.isDirectory()) {
-                AxolotlMod.LOGGER.warn("Directories for items are currently not supported! (" + file.getAbsolutePath() + ")");
+                AxolotlMod.LOGGER.warn("Directories for " + folderName + " are currently not supported! (" + file.getAbsolutePath() + ")");
                 continue;
             }
 
             if (!file.getName().endsWith(".json")) {
-                AxolotlMod.LOGGER.warn("Skipping items file " + file.getName() + " as it does not end with '.json'");
+                AxolotlMod.LOGGER.warn("Skipping " + folderName + " file " + file.getName() + " as it does not end with '.json'");
                 continue;
             }
 
-            final List<CustomItem> foundItems = GSON.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8),
-                    new TypeToken<List<CustomItem>>() {
-                    }.getType());
+            futures.add(AsyncUtil.supplyAsync(() -> {
+                final List<T> found;
 
-            this.customItems.addAll(foundItems);
+                try {
+                    found = GSON.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8), type);
+                    phase.addBytesRead(file.length());
+                } catch (final JsonParseException e) {
+                    throw new IOException("Unable to read " + folderName + " file " + file.getName() + ": " + e.getMessage(), e);
+                }
 
-            AxolotlMod.LOGGER.info("Found " + foundItems.size() + " custom items (" + file.getName() + ")");
+                phase.addEntries(found.size());
+                AxolotlMod.LOGGER.info("Found " + found.size() + " " + label + " (" + file.getName() + ")");
+                return found;
+            }, executor));
         }
 
-        // Generate needed default items
-        this.customItems.stream()
-                .map(customItem -> Registry.ITEM.getId(customItem.getItem()).getPath())
-                .distinct()
-                .forEach(itemId -> {
-                    final File defaultItem = new File(this.mod.getModFolder(),
-                            "pack-prod/assets/minecraft/models/item/" + itemId + ".json");
-
-                    if (defaultItem.exists())
-                        defaultItem.delete();
-
-                    try {
-                        defaultItem.createNewFile();
-
-                        final JsonObject jsonObject = new JsonObject();
-                        final JsonArray overridesArray = new JsonArray();
-
-                        jsonObject.add("parent", new JsonPrimitive("item/generated"));
-                        final JsonObject defaultItemTexturesObject = new JsonObject();
-                        defaultItemTexturesObject.add("layer0", new JsonPrimitive("item/" + itemId));
-                        jsonObject.add("textures", defaultItemTexturesObject);
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            final List<T> definitions = new ArrayList<>();
+            futures.forEach(future -> definitions.addAll(future.join()));
+            return definitions;
+        });
+    }
 
-                        // Generate predicates
-                        this.customItems.forEach(customItem -> {
-                            if (!Registry.ITEM.getId(customItem.getItem()).getPath().equals(itemId))
-                                return;
+    private List<AxolotlSound> loadSounds(final PhaseRecorder phase) throws IOException {
+        // Load sounds
+        final File soundsFile = new File(this.mod.getModFolder(), "sounds.json");
 
-                            // Generate custom item model
-                            String model = null;
+        if (!soundsFile.exists())
+            return new ArrayList<>();
 
-                            if (customItem.isGenerateModel()) {
-                                final File customItemModel = new File(this.mod.getModFolder(),
-                                        "pack-prod/assets/minecraft/models/" + customItem.getName() + ".json");
+        final List<AxolotlSound> sounds = GSON.fromJson(FileUtils.readFileToString(soundsFile, StandardCharsets.UTF_8),
+                new TypeToken<List<AxolotlSound>>() {
+                }.getType());
 
-                                try {
-                                    if (customItemModel.exists())
-                                        customItemModel.delete();
+        phase.addBytesRead(soundsFile.length());
+        phase.addEntries(sounds.size());
+        AxolotlMod.LOGGER.info("Found " + sounds.size() + " custom sounds");
+        return sounds;
+    }
 
-                                    customItemModel.createNewFile();
+    private String generateSoundsFile(final List<AxolotlSound> axolotlSounds) {
+        final JsonObject soundsObject = new JsonObject();
 
-                                    final JsonObject customItemObject = new JsonObject();
-                                    customItemObject.add("parent", new JsonPrimitive(customItem.getParentModel()));
+        axolotlSounds.forEach(axolotlSound -> {
+            final JsonObject soundObject = new JsonObject();
+            soundObject.add("category", new JsonPrimitive(axolotlSound.getSoundCategory().getName()));
 
-                                    final JsonObject customItemTexturesObject = new JsonObject();
-                                    customItemTexturesObject.add("layer0", new JsonPrimitive(customItem.getTextures().get(0)));
+            final JsonArray soundsArray = new JsonArray();
+            soundsArray.add(new JsonPrimitive(axolotlSound.getName()));
+            soundObject.add("sounds", soundsArray);
 
-                                    customItemObject.add("textures", customItemTexturesObject);
+            soundsObject.add(axolotlSound.getName(), soundObject);
+        });
 
-                                    FileUtils.writeStringToFile(customItemModel, customItemObject.toString(), StandardCharsets.UTF_8);
+        return soundsObject.toString();
+    }
 
-                                    model = customItem.getName();
-                                } catch (final IOException e) {
-                                    e.printStackTrace();
-                                }
-                            } else {
-                                model = customItem.getModel();
-                            }
+    private String generateFontFile(final List<Glyph> glyphs, @Nullable final GlyphAtlas atlas) {
+        // Generate font file
+        final JsonObject fontObject = new JsonObject();
+        final JsonArray providersArray = new JsonArray();
 
-                            final JsonObject overrideObject = new JsonObject();
+        if (atlas != null)
+            providersArray.addAll(atlas.getProviders());
 
-                            final JsonObject predicateObject = new JsonObject();
-                            predicateObject.add("custom_model_data", new JsonPrimitive(customItem.getCustomModelData()));
+        glyphs.forEach(glyph -> {
+            if (atlas != null && atlas.isPacked(glyph))
+                return;
 
-                            overrideObject.add("predicate", predicateObject);
-                            overrideObject.add("model", new JsonPrimitive(model));
+            final JsonObject glyphObject = new JsonObject();
 
-                            overridesArray.add(overrideObject);
-                        });
+            final JsonArray charsArray = new JsonArray();
+            charsArray.add(glyph.getText());
+            glyphObject.add("chars", charsArray);
 
-                        jsonObject.add("overrides", overridesArray);
+            glyphObject.add("file", new JsonPrimitive(glyph.getTexture()));
+            glyphObject.add("ascent", new JsonPrimitive(glyph.getAscent()));
+            glyphObject.add("height", new JsonPrimitive(glyph.getHeight()));
+            glyphObject.add("type", new JsonPrimitive("bitmap"));
 
-                        FileUtils.writeStringToFile(defaultItem, jsonObject.toString(), StandardCharsets.UTF_8);
-                    } catch (final IOException e) {
-                        e.printStackTrace();
-                    }
-                });
-    }
+            providersArray.add(glyphObject);
+        });
 
-    private int getFirstCode(final int i) {
-        if (this.glyphs.stream().anyMatch(glyph -> glyph.getCharacter() != null && glyph.getCharacter() == (char) i))
-            return this.getFirstCode(i + 1);
-        return i;
+        fontObject.add("providers", providersArray);
+        return fontObject.toString();
     }
 
     public String shift(final int length) {
         return this.shift(length, false);
     }
 
-    public String shift(int length, final boolean right) {
-        final StringBuilder stringBuilder = new StringBuilder();
+    public String shift(final int length, final boolean right) {
+        return this.registry.getShiftTable().get(length, right);
+    }
 
-        while (length > 0) {
-            final int highestOneBit = Integer.highestOneBit(length);
-            final Optional<Glyph> optionalGlyph = this.getGlyph((right ? "right_" : "") + "shift_" + highestOneBit);
+    /**
+     * The returned text is shared, {@link Text#copy()} it before appending to it.
+     */
+    public Text shiftText(final int length, final boolean right) {
+        return this.registry.getShiftTable().getText(length, right);
+    }
 
-            if (optionalGlyph.isEmpty()) {
-                AxolotlMod.LOGGER.warn("Glyph with length " + highestOneBit + " does not exist!");
-                break;
-            }
+    public GlyphLayout layout() {
+        final PackRegistry registry = this.registry;
+        return new GlyphLayout(registry.getShiftTable(), registry.getGlyphsByName());
+    }
 
-            final Glyph glyph = optionalGlyph.get();
+    public Optional<Glyph> getGlyph(final String name) {
+        return Optional.ofNullable(this.registry.getGlyphsByName().get(name));
+    }
 
-            stringBuilder.append(glyph.getCharacter().toString());
+    public List<Glyph> getGlyphs() {
+        return this.registry.getGlyphs();
+    }
 
-            length -= highestOneBit;
-        }
+    public List<AxolotlSound> getAxolotlSounds() {
+        return this.registry.getAxolotlSounds();
+    }
 
-        return stringBuilder.toString();
+    public List<CustomItem> getCustomItems() {
+        return this.registry.getCustomItems();
     }
 
-    public Optional<Glyph> getGlyph(final String name) {
-        return this.glyphs.stream().filter(glyph -> glyph.getName().equals(name)).findFirst();
+    public CustomItemIndex getCustomItemIndex() {
+        return this.registry.getCustomItemIndex();
     }
 }
@@ -0,0 +1,106 @@
+package dev.axolotlmc.axolotl.pack;
+
+import dev.axolotlmc.axolotl.AxolotlMod;
+import dev.axolotlmc.axolotl.api.Glyph;
+import lombok.Getter;
+import net.minecraft.text.Text;
+
+import java.util.Map;
+
+/**
+ * Shift strings for every width up to {@link #getMaxWidth()}, built once per glyph set.
+ * Wider shifts are composed on demand.
+ *
+ * @author Kenox
+ */
+public class ShiftTable {
+
+    @Getter private final int maxWidth;
+    private final String[] leftGlyphs = new String[Integer.SIZE];
+    private final String[] rightGlyphs = new String[Integer.SIZE];
+    private final String[] left;
+    private final String[] right;
+    private final Text[] leftTexts;
+    private final Text[] rightTexts;
+
+    public ShiftTable(final Map<String, Glyph> glyphsByName, final int maxWidth) {
+        this.maxWidth = Math.max(0, maxWidth);
+
+        for (int bit = 0; bit < Integer.SIZE - 1; bit++) {
+            final Glyph leftGlyph = glyphsByName.get("shift_" + (1 << bit));
+            final Glyph rightGlyph = glyphsByName.get("right_shift_" + (1 << bit));
+            this.leftGlyphs[bit] = leftGlyph == null ? null : leftGlyph.getText();
+            this.rightGlyphs[bit] = rightGlyph == null ? null : rightGlyph.getText();
+        }
+
+        // Reported once here instead of on every shift that would need it
+        warnMissing(this.leftGlyphs, "shift_", this.maxWidth);
+        warnMissing(this.rightGlyphs, "right_shift_", this.maxWidth);
+
+        this.left = new String[this.maxWidth + 1];
+        this.right = new String[this.maxWidth + 1];
+        this.leftTexts = new Text[this.maxWidth + 1];
+        this.rightTexts = new Text[this.maxWidth + 1];
+
+        for (int width = 0; width <= this.maxWidth; width++) {
+            this.left[width] = this.compose(width, false);
+            this.right[width] = this.compose(width, true);
+            this.leftTexts[width] = Text.literal(this.left[width]);
+            this.rightTexts[width] = Text.literal(this.right[width]);
+        }
+    }
+
+    /**
+     * @param width negative widths result in an empty string, just like zero
+     */
+    public String get(final int width, final boolean right) {
+        if (width <= 0)
+            return "";
+
+        if (width <= this.maxWidth)
+            return right ? this.right[width] : this.left[width];
+
+        return this.compose(width, right);
+    }
+
+    /**
+     * The returned text is shared, {@link Text#copy()} it before appending to it.
+     */
+    public Text getText(final int width, final boolean right) {
+        if (width <= this.maxWidth)
+            return right ? this.rightTexts[Math.max(0, width)] : this.leftTexts[Math.max(0, width)];
+
+        return Text.literal(this.compose(width, right));
+    }
+
+    /**
+     * Appends the shift for {@code offset} pixels, positive offsets shift to the right.
+     */
+    public void append(final StringBuilder stringBuilder, final int offset) {
+        stringBuilder.append(this.get(Math.abs(offset), offset > 0));
+    }
+
+    private static void warnMissing(final String[] glyphs, final String prefix, final int maxWidth) {
+        for (int bit = 0; (1 << bit) <= maxWidth && bit < Integer.SIZE - 1; bit++) {
+            if (glyphs[bit] == null)
+                AxolotlMod.LOGGER.warn("Glyph " + prefix + (1 << bit) + " does not exist, shifts using it will be shorter");
+        }
+    }
+
+    private String compose(int width, final boolean right) {
+        final String[] glyphs = right ? this.rightGlyphs : this.leftGlyphs;
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        while (width > 0) {
+            final int bit = Integer.numberOfTrailingZeros(Integer.highestOneBit(width));
+
+            if (glyphs[bit] == null)
+                break;
+
+            stringBuilder.append(glyphs[bit]);
+            width -= 1 << bit;
+        }
+
+        return stringBuilder.toString();
+    }
+}
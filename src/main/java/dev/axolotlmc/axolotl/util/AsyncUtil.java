@@ -0,0 +1,63 @@
+package dev.axolotlmc.axolotl.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * @author Kenox
+ */
+public class AsyncUtil {
+
+    public static <T> CompletableFuture<T> supplyAsync(final IOSupplier<T> supplier, final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return supplier.get();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for the future and rethrows the {@link IOException} it failed with, if any.
+     */
+    public static <T> T join(final CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof UncheckedIOException)
+                cause = cause.getCause();
+
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    public interface IOSupplier<T> {
+
+        T get() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface IOFunction<T, R> {
+
+        R apply(T value) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface IORunnable {
+
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,53 @@
+package dev.axolotlmc.axolotl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * @author Kenox
+ */
+public class HashUtil {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+        }
+    }
+
+    public static String sha1(final byte[] data) {
+        return toHex(sha1().digest(data));
+    }
+
+    public static String sha1(final File file) throws IOException {
+        final MessageDigest digest = sha1();
+        final byte[] buffer = new byte[64 * 1024];
+
+        try (final InputStream inputStream = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    public static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+
+        return new String(chars);
+    }
+}
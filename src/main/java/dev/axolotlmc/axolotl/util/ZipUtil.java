@@ -1,40 +1,107 @@
 package dev.axolotlmc.axolotl.util;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+/**
+ * @author Kenox
+ */
 public class ZipUtil {
-    public static void unZip(final File file, final File destination) throws IOException {
-        final byte[] buffer = new byte[1024];
-        final ZipInputStream zis = new ZipInputStream(new FileInputStream(file));
-        ZipEntry zipEntry = zis.getNextEntry();
-        while (zipEntry != null) {
-            final File newFile = newFile(destination, zipEntry);
-            if (zipEntry.isDirectory()) {
-                if (!newFile.isDirectory() && !newFile.mkdirs()) {
-                    throw new IOException("Failed to create directory " + newFile);
-                }
-            } else {
-                final File parent = newFile.getParentFile();
-                if (!parent.isDirectory() && !parent.mkdirs()) {
-                    throw new IOException("Failed to create directory " + parent);
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Extracts a zip while it is being read, e.g. straight from a download. The stream is read to its end, so a digest
+     * of it covers the whole archive. Every entry is checked against its CRC-32.
+     */
+    public static void unZip(final InputStream inputStream, final File destination) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (final ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
+            ZipEntry zipEntry;
+
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                final File file = newFile(destination, zipEntry);
+
+                if (zipEntry.isDirectory()) {
+                    createDirectory(file);
+                } else {
+                    createDirectory(file.getParentFile());
+                    write(zipInputStream, file, buffer);
                 }
+            }
 
-                final FileOutputStream fos = new FileOutputStream(newFile);
-                int len;
-                while ((len = zis.read(buffer)) > 0) {
-                    fos.write(buffer, 0, len);
+            // The central directory is not part of any entry
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * Extracts a zip on disk, inflating and writing its entries in parallel. Every entry is checked against its CRC-32.
+     */
+    public static void unZip(final File file, final File destination, final Executor executor) throws IOException {
+        try (final ZipFile zipFile = new ZipFile(file)) {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>();
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+            while (entries.hasMoreElements()) {
+                final ZipEntry zipEntry = entries.nextElement();
+                final File newFile = newFile(destination, zipEntry);
+
+                // Directories are created up front, so entries never race for their parents
+                if (zipEntry.isDirectory()) {
+                    createDirectory(newFile);
+                    continue;
                 }
-                fos.close();
+
+                createDirectory(newFile.getParentFile());
+
+                futures.add(AsyncUtil.supplyAsync(() -> {
+                    try (final InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+                        final long crc = write(inputStream, newFile, new byte[BUFFER_SIZE]);
+
+                        if (zipEntry.getCrc() != -1 && zipEntry.getCrc() != crc)
+                            throw new ZipException("Invalid CRC-32 of entry " + zipEntry.getName());
+                    }
+
+                    return null;
+                }, executor));
+            }
+
+            AsyncUtil.join(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)));
+        }
+    }
+
+    private static long write(final InputStream inputStream, final File file, final byte[] buffer) throws IOException {
+        final CRC32 crc = new CRC32();
+
+        try (final OutputStream outputStream = Files.newOutputStream(file.toPath())) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                outputStream.write(buffer, 0, read);
             }
-            zipEntry = zis.getNextEntry();
         }
-        zis.closeEntry();
-        zis.close();
+
+        return crc.getValue();
+    }
+
+    private static void createDirectory(final File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            throw new IOException("Failed to create directory " + directory);
     }
 
     private static File newFile(final File destinationDir, final ZipEntry zipEntry) throws IOException {
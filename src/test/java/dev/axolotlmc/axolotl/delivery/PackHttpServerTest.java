@@ -0,0 +1,190 @@
+package dev.axolotlmc.axolotl.delivery;
+
+import dev.axolotlmc.axolotl.api.config.bucket.PackServerConfig;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author Kenox
+ */
+class PackHttpServerTest {
+
+    private static final String HASH = "0123456789abcdef0123456789abcdef01234567";
+
+    @TempDir
+    File tempDir;
+
+    private PackHttpServer server;
+    private byte[] pack;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        this.pack = new byte[10_000];
+        for (int i = 0; i < this.pack.length; i++) {
+            this.pack[i] = (byte) (i * 31);
+        }
+
+        final File file = new File(this.tempDir, "pack.zip");
+        Files.write(file.toPath(), this.pack);
+
+        final PackServerConfig config = new PackServerConfig(true, 0, 4, 5);
+        config.setPublicUrl("http://localhost");
+
+        this.server = new PackHttpServer(config);
+        this.server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        this.server.publish(file, HASH);
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        this.server.close();
+    }
+
+    @Test
+    void servesWholePack() throws IOException {
+        try (final Socket socket = this.connect()) {
+            final Response response = this.request(socket, "GET /" + HASH + ".zip HTTP/1.1\r\nHost: localhost\r\n\r\n", true);
+
+            assertEquals(200, response.status);
+            assertEquals("\"" + HASH + "\"", response.headers.get("etag"));
+            assertEquals(String.valueOf(this.pack.length), response.headers.get("content-length"));
+            assertArrayEquals(this.pack, response.body);
+        }
+    }
+
+    @Test
+    void answersMatchingETagWithNotModified() throws IOException {
+        try (final Socket socket = this.connect()) {
+            final Response response = this.request(socket, "GET /pack.zip HTTP/1.1\r\nHost: localhost\r\n"
+                    + "If-None-Match: \"" + HASH + "\"\r\n\r\n", false);
+
+            assertEquals(304, response.status);
+            assertNull(response.headers.get("content-length"));
+        }
+    }
+
+    @Test
+    void servesByteRange() throws IOException {
+        try (final Socket socket = this.connect()) {
+            final Response response = this.request(socket, "GET /pack.zip HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Range: bytes=100-199\r\n\r\n", true);
+
+            assertEquals(206, response.status);
+            assertEquals("bytes 100-199/" + this.pack.length, response.headers.get("content-range"));
+            assertArrayEquals(Arrays.copyOfRange(this.pack, 100, 200), response.body);
+        }
+    }
+
+    @Test
+    void servesSuffixRange() throws IOException {
+        try (final Socket socket = this.connect()) {
+            final Response response = this.request(socket, "GET /pack.zip HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Range: bytes=-500\r\n\r\n", true);
+
+            assertEquals(206, response.status);
+            assertEquals("bytes 9500-9999/" + this.pack.length, response.headers.get("content-range"));
+            assertArrayEquals(Arrays.copyOfRange(this.pack, 9500, 10_000), response.body);
+        }
+    }
+
+    @Test
+    void rejectsRangePastTheEnd() throws IOException {
+        try (final Socket socket = this.connect()) {
+            final Response response = this.request(socket, "GET /pack.zip HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Range: bytes=10000-\r\n\r\n", true);
+
+            assertEquals(416, response.status);
+            assertEquals("bytes */" + this.pack.length, response.headers.get("content-range"));
+            assertEquals(0, response.body.length);
+        }
+    }
+
+    @Test
+    void keepsConnectionAliveBetweenRequests() throws IOException {
+        try (final Socket socket = this.connect()) {
+            final Response first = this.request(socket, "GET /pack.zip HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Range: bytes=0-9\r\n\r\n", true);
+            final Response second = this.request(socket, "GET /pack.zip HTTP/1.1\r\nHost: localhost\r\n\r\n", true);
+
+            assertEquals(206, first.status);
+            assertEquals("keep-alive", first.headers.get("connection"));
+            assertArrayEquals(Arrays.copyOfRange(this.pack, 0, 10), first.body);
+
+            assertEquals(200, second.status);
+            assertArrayEquals(this.pack, second.body);
+        }
+    }
+
+    @Test
+    void answersUnknownPathWithNotFound() throws IOException {
+        try (final Socket socket = this.connect()) {
+            final Response response = this.request(socket, "GET /missing.zip HTTP/1.1\r\nHost: localhost\r\n\r\n", true);
+
+            assertEquals(404, response.status);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.server.getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private Response request(final Socket socket, final String request, final boolean hasBody) throws IOException {
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+        socket.getOutputStream().flush();
+
+        final InputStream inputStream = socket.getInputStream();
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+
+        // Reads byte by byte, so nothing of the next response is consumed
+        while (!head.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+            final int read = inputStream.read();
+
+            if (read == -1)
+                throw new IOException("Connection closed before the end of the response head");
+
+            head.write(read);
+        }
+
+        final String[] lines = head.toString(StandardCharsets.ISO_8859_1).split("\r\n");
+        final Map<String, String> headers = new HashMap<>();
+
+        for (int i = 1; i < lines.length; i++) {
+            final int separator = lines[i].indexOf(':');
+            headers.put(lines[i].substring(0, separator).trim().toLowerCase(Locale.ROOT), lines[i].substring(separator + 1).trim());
+        }
+
+        final int contentLength = hasBody ? Integer.parseInt(headers.get("content-length")) : 0;
+        return new Response(Integer.parseInt(lines[0].split(" ")[1]), headers, inputStream.readNBytes(contentLength));
+    }
+
+    @RequiredArgsConstructor
+    private static class Response {
+
+        private final int status;
+        private final Map<String, String> headers;
+        private final byte[] body;
+    }
+}
@@ -0,0 +1,163 @@
+package dev.axolotlmc.axolotl.delivery;
+
+import dev.axolotlmc.axolotl.api.config.bucket.DeliveryConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Kenox
+ */
+class PackSendSchedulerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long MIB = 1024 * 1024;
+
+    private final List<UUID> sent = new ArrayList<>();
+    private final List<String> messages = new ArrayList<>();
+    private long now = 1000 * SECOND;
+
+    @Test
+    void refillsSendTokensOverTime() {
+        final PackSendScheduler scheduler = this.createScheduler(new DeliveryConfig(true, 2, 2, 0, 0, 0), MIB);
+        final List<UUID> players = this.enqueue(scheduler, 5);
+
+        // Starts with a full burst
+        scheduler.tick(1);
+        assertEquals(players.subList(0, 2), this.sent);
+
+        this.advance(SECOND / 4);
+        scheduler.tick(1);
+        assertEquals(2, this.sent.size());
+
+        this.advance(SECOND / 4);
+        scheduler.tick(1);
+        assertEquals(3, this.sent.size());
+
+        this.advance(SECOND);
+        scheduler.tick(1);
+        assertEquals(5, this.sent.size());
+    }
+
+    @Test
+    void burstIsCappedAfterLongPause() {
+        final PackSendScheduler scheduler = this.createScheduler(new DeliveryConfig(true, 1, 2, 0, 0, 0), MIB);
+        this.enqueue(scheduler, 6);
+
+        scheduler.tick(1);
+        assertEquals(2, this.sent.size());
+
+        // A long pause refills no more than the burst
+        this.advance(60 * SECOND);
+        scheduler.tick(1);
+        assertEquals(4, this.sent.size());
+    }
+
+    @Test
+    void paysBackBandwidthDebtOfLargePack() {
+        final PackSendScheduler scheduler = this.createScheduler(new DeliveryConfig(true, 0, 0, 0, 1, 0), 3 * MIB);
+        final List<UUID> players = this.enqueue(scheduler, 3);
+
+        // The first pack is three seconds of bandwidth, the bucket is 2 MiB in debt afterwards
+        scheduler.tick(1);
+        assertEquals(List.of(players.get(0)), this.sent);
+
+        this.advance(SECOND);
+        scheduler.tick(1);
+        assertEquals(1, this.sent.size());
+
+        this.advance(SECOND);
+        scheduler.tick(1);
+        assertEquals(1, this.sent.size());
+
+        this.advance(SECOND / 2);
+        scheduler.tick(1);
+        assertEquals(List.of(players.get(0), players.get(1)), this.sent);
+    }
+
+    @Test
+    void admitsInJoinOrder() {
+        final PackSendScheduler scheduler = this.createScheduler(new DeliveryConfig(true, 1, 1, 0, 0, 0), MIB);
+        final List<UUID> players = this.enqueue(scheduler, 3);
+
+        // Players already waiting keep their place
+        scheduler.enqueue(players.get(0), null);
+
+        for (int i = 0; i < players.size(); i++) {
+            scheduler.tick(1);
+            this.advance(SECOND);
+        }
+
+        assertEquals(players, this.sent);
+    }
+
+    @Test
+    void skipsPlayersThatLeft() {
+        final PackSendScheduler scheduler = this.createScheduler(new DeliveryConfig(true, 1, 1, 0, 0, 0), MIB);
+        final List<UUID> players = this.enqueue(scheduler, 3);
+
+        scheduler.remove(players.get(0));
+        scheduler.tick(1);
+
+        assertEquals(List.of(players.get(1)), this.sent);
+    }
+
+    @Test
+    void freesDownloadSlotOnStatusOrTimeout() {
+        final PackSendScheduler scheduler = this.createScheduler(new DeliveryConfig(true, 0, 0, 1, 0, 30), MIB);
+        final List<UUID> players = this.enqueue(scheduler, 3);
+
+        scheduler.tick(1);
+        scheduler.tick(1);
+        assertEquals(1, this.sent.size());
+
+        scheduler.onDownloadFinished(players.get(0));
+        scheduler.tick(1);
+        assertEquals(2, this.sent.size());
+
+        // The second client never answers
+        this.advance(30 * SECOND);
+        scheduler.tick(1);
+        assertEquals(2, this.sent.size());
+
+        this.advance(1);
+        scheduler.tick(1);
+        assertEquals(players, this.sent);
+    }
+
+    @Test
+    void showsQueuePositions() {
+        final PackSendScheduler scheduler = this.createScheduler(new DeliveryConfig(true, 1, 1, 0, 0, 0), MIB);
+        this.enqueue(scheduler, 3);
+
+        scheduler.tick(20);
+
+        assertEquals(List.of("Waiting for the resource pack download.. (1 of 2)", "Waiting for the resource pack download.. (2 of 2)"),
+                this.messages);
+    }
+
+    private PackSendScheduler createScheduler(final DeliveryConfig deliveryConfig, final long packSize) {
+        final PackDeliverySnapshot snapshot = new PackDeliverySnapshot(true, false, false, "hash", null, packSize, null, deliveryConfig);
+        return new PackSendScheduler(this.sent::add, (player, message) -> this.messages.add(message), () -> snapshot, () -> this.now);
+    }
+
+    private List<UUID> enqueue(final PackSendScheduler scheduler, final int count) {
+        final List<UUID> players = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final UUID player = new UUID(0, i);
+            players.add(player);
+            scheduler.enqueue(player, null);
+        }
+
+        return players;
+    }
+
+    private void advance(final long nanos) {
+        this.now += nanos;
+    }
+}
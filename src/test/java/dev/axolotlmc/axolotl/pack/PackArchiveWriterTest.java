@@ -0,0 +1,172 @@
+package dev.axolotlmc.axolotl.pack;
+
+import dev.axolotlmc.axolotl.util.HashUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Kenox
+ */
+class PackArchiveWriterTest {
+
+    private static final long BUILD_TIME = 1_660_000_000_000L;
+    private static final byte[] MCMETA = "{\"pack\":{\"pack_format\":9,\"description\":\"Axolotl\"}}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MODEL = "{\"parent\":\"item/generated\",\"textures\":{\"layer0\":\"item/paper\"}}".repeat(20)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void writesReadableArchive() throws IOException {
+        final File pack = new File(this.tempDir, "pack.zip");
+        final PackArchiveWriter writer = new PackArchiveWriter(pack, 6, true, null, null);
+
+        try (writer) {
+            writer.addDirectory("assets/", BUILD_TIME);
+            writer.addFile("pack.mcmeta", MCMETA, BUILD_TIME);
+            writer.addAll(List.of(PackEntry.directory("assets/minecraft/", BUILD_TIME),
+                    PackEntry.generated("assets/minecraft/models/item/paper.json", MODEL, BUILD_TIME)), Runnable::run, 1);
+        }
+
+        assertEquals(4, writer.getEntryCount());
+        assertEquals(HashUtil.sha1(pack), writer.getHash());
+
+        try (final ZipFile zipFile = new ZipFile(pack)) {
+            final List<String> names = new ArrayList<>();
+            Collections.list(zipFile.entries()).forEach(entry -> names.add(entry.getName()));
+            assertEquals(List.of("assets/", "pack.mcmeta", "assets/minecraft/", "assets/minecraft/models/item/paper.json"), names);
+
+            assertTrue(zipFile.getEntry("assets/").isDirectory());
+            assertTrue(zipFile.getEntry("assets/minecraft/").isDirectory());
+            assertEntry(zipFile, "pack.mcmeta", MCMETA);
+            assertEntry(zipFile, "assets/minecraft/models/item/paper.json", MODEL);
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("pack.mcmeta").getMethod());
+        }
+
+        assertEquals(0x10, readExternalAttributes(pack, "assets/"));
+        assertEquals(0x10, readExternalAttributes(pack, "assets/minecraft/"));
+        assertEquals(0, readExternalAttributes(pack, "pack.mcmeta"));
+    }
+
+    @Test
+    void deterministicArchivesAreIdentical() throws IOException {
+        final File first = new File(this.tempDir, "first.zip");
+        final File second = new File(this.tempDir, "second.zip");
+
+        for (final File pack : List.of(first, second)) {
+            try (final PackArchiveWriter writer = new PackArchiveWriter(pack, -1, true, null, null)) {
+                writer.addFile("pack.mcmeta", MCMETA, BUILD_TIME);
+                writer.addFile("assets/minecraft/models/item/paper.json", MODEL, BUILD_TIME);
+            }
+        }
+
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    void reusesUnchangedEntriesOfPreviousArchive() throws IOException {
+        final File previousPack = new File(this.tempDir, "previous.zip");
+        final PackArchiveWriter previousWriter = new PackArchiveWriter(previousPack, 6, true, null, null);
+
+        try (previousWriter) {
+            previousWriter.addFile("pack.mcmeta", MCMETA, BUILD_TIME);
+            previousWriter.addFile("assets/minecraft/models/item/paper.json", MODEL, BUILD_TIME);
+            previousWriter.addFile("assets/minecraft/models/item/stick.json", MODEL, BUILD_TIME);
+        }
+
+        final BuildManifest previousManifest = new BuildManifest();
+        previousManifest.setOutputs(previousWriter.getOutputs());
+
+        final byte[] changedModel = "{\"parent\":\"item/handheld\"}".getBytes(StandardCharsets.UTF_8);
+        final File pack = new File(this.tempDir, "pack.zip");
+        final PackArchiveWriter writer = new PackArchiveWriter(pack, 6, true, previousManifest, previousPack);
+
+        try (writer) {
+            writer.addFile("pack.mcmeta", MCMETA, BUILD_TIME);
+            writer.addFile("assets/minecraft/models/item/paper.json", changedModel, BUILD_TIME);
+            writer.addCopy("assets/minecraft/models/item/stick.json");
+        }
+
+        assertEquals(2, writer.getReusedEntries());
+        assertEquals(HashUtil.sha1(pack), writer.getHash());
+        assertEquals(HashUtil.sha1(changedModel), writer.getOutputs().get("assets/minecraft/models/item/paper.json").getHash());
+
+        try (final ZipFile zipFile = new ZipFile(pack)) {
+            assertEquals(3, zipFile.size());
+            assertEntry(zipFile, "pack.mcmeta", MCMETA);
+            assertEntry(zipFile, "assets/minecraft/models/item/paper.json", changedModel);
+            assertEntry(zipFile, "assets/minecraft/models/item/stick.json", MODEL);
+        }
+    }
+
+    @Test
+    void refusesToCopyUnknownEntries() throws IOException {
+        final File pack = new File(this.tempDir, "pack.zip");
+
+        try (final PackArchiveWriter writer = new PackArchiveWriter(pack, 6, true, null, null)) {
+            assertThrows(IOException.class, () -> writer.addCopy("pack.mcmeta"));
+            assertFalse(writer.getOutputs().containsKey("pack.mcmeta"));
+        }
+    }
+
+    private static void assertEntry(final ZipFile zipFile, final String name, final byte[] expected) throws IOException {
+        final ZipEntry entry = zipFile.getEntry(name);
+        final byte[] data;
+
+        // Reading through the stream makes ZipFile verify the crc as well
+        try (final InputStream inputStream = zipFile.getInputStream(entry)) {
+            data = inputStream.readAllBytes();
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(expected);
+
+        assertArrayEquals(expected, data);
+        assertEquals(crc.getValue(), entry.getCrc());
+        assertEquals(expected.length, entry.getSize());
+    }
+
+    /**
+     * ZipFile does not expose external attributes, so they are read from the central directory directly.
+     */
+    private static int readExternalAttributes(final File pack, final String name) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(pack.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        final int end = buffer.limit() - 22;
+        int offset = buffer.getInt(end + 16);
+
+        for (int entry = 0; entry < buffer.getShort(end + 10); entry++) {
+            final int nameLength = buffer.getShort(offset + 28);
+            final int extraLength = buffer.getShort(offset + 30);
+            final int commentLength = buffer.getShort(offset + 32);
+            final String entryName = new String(buffer.array(), offset + 46, nameLength, StandardCharsets.UTF_8);
+
+            if (entryName.equals(name))
+                return buffer.getInt(offset + 38);
+
+            offset += 46 + nameLength + extraLength + commentLength;
+        }
+
+        throw new IOException("No central directory entry " + name);
+    }
+}